@@ -3,7 +3,7 @@ class Item {
     String itemName;
     float basePrice;
     int stockQty;
-    final float GST_RATE = 0.18f;
+    final int GST_BASIS_POINTS = 1800; // exact 18% for paise arithmetic
     final String SYSTEM_NAME = "IMS v1.0";
 
 
@@ -22,14 +22,29 @@ class Item {
         System.out.println("Item Name: " + itemName);
         System.out.println("Base Price: " + basePrice);
         System.out.println("Stock Quantity: " + stockQty);
-        System.out.println("Net Price: " + getNetPrice());
+        System.out.println("Net Price: " + formatPaise(getNetPricePaise()));
     }
 
 
     float getNetPrice() {
-        float newPrice;
-        newPrice = basePrice + (basePrice * GST_RATE);
-        return newPrice;
+        return getNetPricePaise() / 100f;
+    }
+
+    // Prices are computed in paise (long) so GST and discounts round exactly, half-up.
+    long getNetPricePaise() {
+        long base = Math.round(basePrice * 100.0);
+        return base + percentOf(base, GST_BASIS_POINTS);
+    }
+
+    // Half-up on the magnitude, so refunds and credits round like charges.
+    static long percentOf(long paise, int basisPoints) {
+        long scaled = paise * basisPoints;
+        return scaled < 0 ? -((-scaled + 5_000) / 10_000) : (scaled + 5_000) / 10_000;
+    }
+
+    static String formatPaise(long paise) {
+        long abs = Math.abs(paise);
+        return (paise < 0 ? "-" : "") + String.format("%d.%02d", abs / 100, abs % 100);
     }
 
 
@@ -59,11 +74,10 @@ class PerishableItem extends Item {
 
 
     @Override
-    float getNetPrice() {
-        float newPrice = super.getNetPrice();
+    long getNetPricePaise() {
+        long net = super.getNetPricePaise();
         // Apply 10% discount for perishable goods
-        newPrice = newPrice - (newPrice * 0.10f);
-        return newPrice;
+        return net - percentOf(net, 1000);
     }
 
 
@@ -88,11 +102,10 @@ class NonPerishableItem extends Item {
 
 
     @Override
-    float getNetPrice() {
-        float newPrice = super.getNetPrice();
+    long getNetPricePaise() {
+        long net = super.getNetPricePaise();
         // Apply 5% bulk discount for non-perishable items
-        newPrice = newPrice - (newPrice * 0.05f);
-        return newPrice;
+        return net - percentOf(net, 500);
     }
 
 
@@ -1,5 +1,4 @@
 import java.util.*;
-import java.util.stream.*;
 
 
 interface Stockable {
@@ -20,6 +19,13 @@ interface Reportable {
 }
 
 
+/** Notified when a product is added under a name another SKU already uses. */
+@FunctionalInterface
+interface DuplicateNameListener {
+    void duplicateDetected(String name, String newSku, Set<String> allSkus);
+}
+
+
 
 class Product implements Stockable {
     private final String sku;
@@ -54,6 +60,592 @@ class Product implements Stockable {
 }
 
 
+/**
+ * Running price statistics in primitives: count, mean and variance via Welford's
+ * update. Instances merge (Chan et al.), so partial stats from separate shards
+ * can be combined. Every update is O(1); order statistics such as min, max and
+ * quantiles come from an ordered index instead (see InventoryManager), since
+ * they cannot be kept exact under removal here.
+ */
+class PriceStats {
+    private long   count;
+    private double mean;
+    private double m2;            // sum of squared deviations from the mean
+
+    public void add(double x) {
+        count++;
+        double d = x - mean;
+        mean += d / count;
+        m2 += d * (x - mean);
+    }
+
+    /** Remove one value added earlier; count, mean and variance stay exact. */
+    public void remove(double x) {
+        if (count == 0) throw new IllegalStateException("No prices tracked");
+        if (--count == 0) {
+            mean = m2 = 0;
+            return;
+        }
+        double previousMean = mean;
+        mean = (previousMean * (count + 1) - x) / count;
+        m2 = Math.max(0, m2 - (x - previousMean) * (x - mean));
+    }
+
+    /** Fold another instance into this one. */
+    public void merge(PriceStats other) {
+        if (other.count == 0) return;
+        if (count == 0) {
+            mean = other.mean;
+            m2 = other.m2;
+        } else {
+            long n = count + other.count;
+            double d = other.mean - mean;
+            mean += d * other.count / n;
+            m2 += other.m2 + d * d * ((double) count * other.count / n);
+        }
+        count += other.count;
+    }
+
+    public long   getCount()    { return count; }
+    public double getMean()     { return count == 0 ? 0.0 : mean; }
+    public double getVariance() { return count == 0 ? 0.0 : m2 / count; }   // population variance
+    public double getStdDev()   { return Math.sqrt(getVariance()); }
+}
+
+
+/**
+ * Order-statistic treap over (long key, item) pairs, ascending by key with ties
+ * broken by a comparator on the item. Every node carries its subtree size, so
+ * insert, remove and locating rank r are O(log n) and walking k entries from a
+ * rank is O(log n + k). Nodes live in parallel primitive arrays with a free
+ * list instead of one object per entry, which matters at millions of SKUs.
+ */
+class RankIndex<T> {
+    private static final int NIL = 0;   // node 0 is the empty sentinel (size 0)
+
+    private final Comparator<? super T> tieBreak;
+    private long[]   keys       = new long[16];
+    private Object[] items      = new Object[16];
+    private int[]    left       = new int[16];
+    private int[]    right      = new int[16];
+    private int[]    sizes      = new int[16];
+    private int[]    priorities = new int[16];
+    private int root = NIL;
+    private int nextNode = 1;
+    private int freeList = NIL;
+    private int seed = 0x2545F491;
+
+    public RankIndex(Comparator<? super T> tieBreak) {
+        this.tieBreak = tieBreak;
+    }
+
+    public int size() { return sizes[root]; }
+
+    public void add(long key, T item) {
+        int node = allocate(key, item);
+        root = insert(root, node);
+    }
+
+    /** Remove the entry for {@code item} filed under {@code key}; false if absent. */
+    public boolean remove(long key, T item) {
+        int t = root;
+        while (t != NIL) {
+            int c = compare(key, item, t);
+            if (c == 0) break;
+            t = c < 0 ? left[t] : right[t];
+        }
+        if (t == NIL) return false;
+        root = remove(root, key, item);
+        return true;
+    }
+
+    /** Visit up to {@code count} entries in ascending order, starting at rank {@code fromRank}. */
+    public void forEachFrom(int fromRank, int count, java.util.function.Consumer<? super T> action) {
+        if (fromRank < 0 || fromRank >= size() || count <= 0) return;
+        int[] stack = new int[32];
+        int depth = 0;
+        int t = root, r = fromRank;
+        while (t != NIL) {                       // descend to the node at rank fromRank
+            int ls = sizes[left[t]];
+            if (r < ls) {
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = t;
+                t = left[t];
+            } else if (r == ls) {
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = t;
+                break;
+            } else {
+                r -= ls + 1;
+                t = right[t];
+            }
+        }
+        while (depth > 0 && count-- > 0) {       // in-order walk from there
+            int node = stack[--depth];
+            action.accept(item(node));
+            for (t = right[node]; t != NIL; t = left[t]) {
+                if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+                stack[depth++] = t;
+            }
+        }
+    }
+
+    /** Number of entries with key strictly below {@code key}, i.e. the rank of the first key >= it. */
+    public int countBelow(long key) {
+        int count = 0;
+        for (int t = root; t != NIL; ) {
+            if (keys[t] < key) {
+                count += sizes[left[t]] + 1;
+                t = right[t];
+            } else {
+                t = left[t];
+            }
+        }
+        return count;
+    }
+
+    /** Number of entries with {@code lo <= key <= hi}. */
+    public int countInRange(long lo, long hi) {
+        if (lo > hi) return 0;
+        int atMostHi = hi == Long.MAX_VALUE ? size() : countBelow(hi + 1);
+        return atMostHi - countBelow(lo);
+    }
+
+    /** Visit entries with {@code lo <= key <= hi} in key order — O(log n + matches). */
+    public void forEachInRange(long lo, long hi, java.util.function.Consumer<? super T> action) {
+        forEachFrom(countBelow(lo), countInRange(lo, hi), action);
+    }
+
+    /** Item at ascending rank {@code rank}. */
+    public T get(int rank) {
+        if (rank < 0 || rank >= size()) throw new IndexOutOfBoundsException(rank);
+        return item(select(rank));
+    }
+
+    /** Key at ascending rank {@code rank}. */
+    public long keyAt(int rank) {
+        if (rank < 0 || rank >= size()) throw new IndexOutOfBoundsException(rank);
+        return keys[select(rank)];
+    }
+
+    /** Entries from rank {@code fromRank}, at most {@code count} of them. */
+    public List<T> page(int fromRank, int count) {
+        List<T> out = new ArrayList<>(Math.max(0, Math.min(count, size() - fromRank)));
+        forEachFrom(fromRank, count, out::add);
+        return out;
+    }
+
+    // —— treap internals ——
+
+    private int select(int rank) {
+        int t = root;
+        while (true) {
+            int ls = sizes[left[t]];
+            if (rank < ls) {
+                t = left[t];
+            } else if (rank == ls) {
+                return t;
+            } else {
+                rank -= ls + 1;
+                t = right[t];
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private T item(int node) { return (T) items[node]; }
+
+    private int compare(long key, T item, int node) {
+        int c = Long.compare(key, keys[node]);
+        return c != 0 ? c : tieBreak.compare(item, item(node));
+    }
+
+    private int allocate(long key, T item) {
+        int node;
+        if (freeList != NIL) {
+            node = freeList;
+            freeList = left[node];
+        } else {
+            if (nextNode == keys.length) grow();
+            node = nextNode++;
+        }
+        seed ^= seed << 13; seed ^= seed >>> 17; seed ^= seed << 5;   // xorshift priority
+        keys[node] = key;
+        items[node] = item;
+        left[node] = right[node] = NIL;
+        sizes[node] = 1;
+        priorities[node] = seed;
+        return node;
+    }
+
+    private void grow() {
+        int cap = keys.length * 2;
+        keys = Arrays.copyOf(keys, cap);
+        items = Arrays.copyOf(items, cap);
+        left = Arrays.copyOf(left, cap);
+        right = Arrays.copyOf(right, cap);
+        sizes = Arrays.copyOf(sizes, cap);
+        priorities = Arrays.copyOf(priorities, cap);
+    }
+
+    private int insert(int t, int node) {
+        if (t == NIL) return node;
+        sizes[t]++;
+        if (compare(keys[node], item(node), t) < 0) {
+            left[t] = insert(left[t], node);
+            if (priorities[left[t]] > priorities[t]) t = rotateRight(t);
+        } else {
+            right[t] = insert(right[t], node);
+            if (priorities[right[t]] > priorities[t]) t = rotateLeft(t);
+        }
+        return t;
+    }
+
+    private int remove(int t, long key, T item) {
+        int c = compare(key, item, t);
+        if (c == 0) {
+            int merged = merge(left[t], right[t]);
+            items[t] = null;
+            left[t] = freeList;
+            freeList = t;
+            return merged;
+        }
+        sizes[t]--;
+        if (c < 0) left[t] = remove(left[t], key, item);
+        else       right[t] = remove(right[t], key, item);
+        return t;
+    }
+
+    private int merge(int a, int b) {
+        if (a == NIL) return b;
+        if (b == NIL) return a;
+        if (priorities[a] > priorities[b]) {
+            right[a] = merge(right[a], b);
+            sizes[a] = sizes[left[a]] + sizes[right[a]] + 1;
+            return a;
+        }
+        left[b] = merge(a, left[b]);
+        sizes[b] = sizes[left[b]] + sizes[right[b]] + 1;
+        return b;
+    }
+
+    private int rotateRight(int t) {
+        int l = left[t];
+        left[t] = right[l];
+        right[l] = t;
+        sizes[l] = sizes[t];
+        sizes[t] = sizes[left[t]] + sizes[right[t]] + 1;
+        return l;
+    }
+
+    private int rotateLeft(int t) {
+        int r = right[t];
+        right[t] = left[r];
+        left[r] = t;
+        sizes[r] = sizes[t];
+        sizes[t] = sizes[left[t]] + sizes[right[t]] + 1;
+        return r;
+    }
+}
+
+
+/**
+ * Inverted index over product names for prefix and typo-tolerant search.
+ *
+ * Names are lower-cased and split into terms; each distinct term keeps a
+ * posting list of document ids (int[]). Prefix matches come from a range scan
+ * of the sorted term dictionary. Fuzzy matches use a trigram index over the
+ * dictionary — not over documents — so candidates are gathered from a few
+ * thousand terms and confirmed with a bounded edit distance before any posting
+ * list is read. A document scores 3 per query term matched exactly, 2 by prefix
+ * and 1 by a fuzzy match; results are ranked by score, then by indexing order.
+ * Query cost is bounded by the postings of the matched terms, so selective
+ * queries stay sub-millisecond at millions of names. A very short prefix can
+ * match far more terms than that allows, so prefix expansion scores at most
+ * MAX_PREFIX_TERMS terms, preferring the shortest completions and, among
+ * equally long ones, the terms found in the most documents.
+ *
+ * A replaced product leaves its old document as a tombstone in the postings;
+ * once tombstones make up a quarter of all postings the lists are compacted
+ * and documents renumbered (in indexing order, so ranking ties are unchanged).
+ */
+class NameSearchIndex {
+    private static final int EXACT = 3, PREFIX = 2, FUZZY = 1;
+    private static final int MAX_PREFIX_TERMS = 512;
+    private static final int RANK_POSTING_BITS = 23, RANK_TERM_BITS = 30;   // prefix rank key packing
+    private static final IntList EMPTY = new IntList();
+
+    /** Growable int[] used for posting lists. */
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+
+    private final List<Product> docs = new ArrayList<>();             // doc id → product; null once replaced
+    private final Map<String, Integer> docBySku = new HashMap<>();
+    private final TreeMap<String, Integer> termIds = new TreeMap<>();  // sorted dictionary for prefix scans
+    private final List<String> termText = new ArrayList<>();
+    private final List<IntList> termDocs = new ArrayList<>();
+    private final Map<Long, IntList> termsByGram = new HashMap<>();
+    private long postingCount;     // entries across all posting lists, tombstones included
+    private long deadPostings;     // entries that point at replaced documents
+
+    // Per-query scratch, reused so a search allocates nothing per document
+    private int[] docScores = new int[16];
+    private int[] docLastWord = new int[16];
+    private int[] termGramHits = new int[16];
+    private final IntList touchedDocs = new IntList();
+    private final IntList touchedTerms = new IntList();
+    private final IntList prefixTerms = new IntList();
+    private int[] editRow = new int[32];
+    private int[] editPrev = new int[32];
+
+    /** Index a product's name; a product with the same SKU is replaced. */
+    public void add(Product p) {
+        Integer old = docBySku.put(p.getSku(), docs.size());
+        if (old != null) {
+            deadPostings += new HashSet<>(tokenize(docs.get(old).getName())).size();
+            docs.set(old, null);
+        }
+        int doc = docs.size();
+        docs.add(p);
+        if (doc == docScores.length) {
+            docScores = Arrays.copyOf(docScores, doc * 2);
+            docLastWord = Arrays.copyOf(docLastWord, doc * 2);
+        }
+        docLastWord[doc] = -1;
+        for (String text : tokenize(p.getName())) {
+            IntList postings = termDocs.get(termId(text));
+            if (postings.size > 0 && postings.values[postings.size - 1] == doc) continue;  // repeated word
+            postings.add(doc);
+            postingCount++;
+        }
+        if (deadPostings * 4 >= postingCount && deadPostings > 0) compact();
+    }
+
+    /** SKUs whose names best match {@code query}, at most {@code limit}, best first. */
+    public List<String> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        for (int w = 0; w < words.size(); w++) {
+            String word = words.get(w);
+            Integer exact = termIds.get(word);
+            if (exact != null) score(exact, EXACT, w);
+            scorePrefix(word, w);
+            scoreFuzzy(word, w);
+        }
+        int[] top = topDocs(limit);
+        List<String> out = new ArrayList<>(top.length);
+        for (int doc : top) out.add(docs.get(doc).getSku());
+        for (int k = 0; k < touchedDocs.size; k++) {
+            int doc = touchedDocs.values[k];
+            docScores[doc] = 0;
+            docLastWord[doc] = -1;
+        }
+        touchedDocs.size = 0;
+        return out;
+    }
+
+    private int termId(String text) {
+        Integer id = termIds.get(text);
+        if (id != null) return id;
+        int t = termText.size();
+        termIds.put(text, t);
+        termText.add(text);
+        termDocs.add(new IntList());
+        if (t == termGramHits.length) termGramHits = Arrays.copyOf(termGramHits, t * 2);
+        for (long gram : grams(text))
+            termsByGram.computeIfAbsent(gram, g -> new IntList()).add(t);
+        return t;
+    }
+
+    /** Add {@code points} to each live document of term {@code t} not yet credited for query word {@code w}. */
+    private void score(int t, int points, int w) {
+        IntList postings = termDocs.get(t);
+        for (int k = 0; k < postings.size; k++) {
+            int doc = postings.values[k];
+            if (docLastWord[doc] == w || docs.get(doc) == null) continue;
+            if (docScores[doc] == 0) touchedDocs.add(doc);
+            docScores[doc] += points;
+            docLastWord[doc] = w;
+        }
+    }
+
+    /**
+     * Score terms that extend {@code word}. Beyond MAX_PREFIX_TERMS matches only
+     * the best-ranked ones are scored: shortest first, then most documents.
+     */
+    private void scorePrefix(String word, int w) {
+        for (int t : termIds.subMap(word, false, word + Character.MAX_VALUE, false).values())
+            prefixTerms.add(t);
+        if (prefixTerms.size <= MAX_PREFIX_TERMS) {
+            for (int k = 0; k < prefixTerms.size; k++) score(prefixTerms.values[k], PREFIX, w);
+        } else {
+            // length | inverted posting count | term id, so an ascending sort puts the best first
+            long[] ranked = new long[prefixTerms.size];
+            long postingMask = (1L << RANK_POSTING_BITS) - 1;
+            for (int k = 0; k < ranked.length; k++) {
+                int t = prefixTerms.values[k];
+                long length = Math.min(termText.get(t).length(), (1 << (63 - RANK_POSTING_BITS - RANK_TERM_BITS)) - 1);
+                long sparse = postingMask - Math.min(termDocs.get(t).size, postingMask);
+                ranked[k] = (length << (RANK_POSTING_BITS + RANK_TERM_BITS)) | (sparse << RANK_TERM_BITS) | t;
+            }
+            Arrays.sort(ranked);
+            for (int k = 0; k < MAX_PREFIX_TERMS; k++)
+                score((int) (ranked[k] & ((1L << RANK_TERM_BITS) - 1)), PREFIX, w);
+        }
+        prefixTerms.size = 0;
+    }
+
+    /** Score terms within the edit budget of {@code word}, found through shared trigrams. */
+    private void scoreFuzzy(String word, int w) {
+        int maxEdits = word.length() < 4 ? 0 : word.length() < 8 ? 1 : 2;
+        if (maxEdits == 0) return;
+        // A term within maxEdits keeps at least `needed` of the word's trigrams. Skipping
+        // the (needed - 2) longest gram lists still leaves every such term with two hits
+        // among the rest, so common grams are never scanned and the count filter stays sharp.
+        long[] grams = grams(word);
+        int needed = grams.length - 3 * maxEdits;
+        IntList[] lists = new IntList[grams.length];
+        for (int g = 0; g < grams.length; g++)
+            lists[g] = termsByGram.getOrDefault(grams[g], EMPTY);
+        Arrays.sort(lists, Comparator.comparingInt(l -> l.size));
+        int skip = Math.max(0, needed - 2);
+        int threshold = needed - skip;
+        for (int g = 0; g < lists.length - skip; g++) {
+            for (int k = 0; k < lists[g].size; k++) {
+                int t = lists[g].values[k];
+                if (termGramHits[t]++ == 0) touchedTerms.add(t);
+            }
+        }
+        for (int k = 0; k < touchedTerms.size; k++) {
+            int t = touchedTerms.values[k];
+            String text = termText.get(t);
+            if (termGramHits[t] >= threshold && Math.abs(text.length() - word.length()) <= maxEdits
+                    && !text.startsWith(word) && withinEdits(word, text, maxEdits))
+                score(t, FUZZY, w);
+            termGramHits[t] = 0;
+        }
+        touchedTerms.size = 0;
+    }
+
+    /** Drop tombstoned documents from every posting list and renumber the live ones in order. */
+    private void compact() {
+        int[] remap = new int[docs.size()];
+        List<Product> live = new ArrayList<>(docs.size());
+        for (int d = 0; d < docs.size(); d++) {
+            Product p = docs.get(d);
+            remap[d] = p == null ? -1 : live.size();
+            if (p != null) {
+                docBySku.put(p.getSku(), live.size());
+                live.add(p);
+            }
+        }
+        docs.clear();
+        docs.addAll(live);
+        for (IntList postings : termDocs) {
+            int n = 0;
+            for (int k = 0; k < postings.size; k++) {
+                int doc = remap[postings.values[k]];
+                if (doc >= 0) postings.values[n++] = doc;
+            }
+            postings.size = n;
+        }
+        postingCount -= deadPostings;
+        deadPostings = 0;
+    }
+
+    /** Best {@code limit} touched documents (score desc, then first indexed) via a bounded min-heap. */
+    private int[] topDocs(int limit) {
+        int[] heap = new int[Math.max(0, Math.min(limit, touchedDocs.size))];
+        int n = 0;
+        for (int k = 0; k < touchedDocs.size && heap.length > 0; k++) {
+            int doc = touchedDocs.values[k];
+            if (n < heap.length) {
+                heap[n] = doc;
+                siftUp(heap, n++);
+            } else if (better(doc, heap[0])) {
+                heap[0] = doc;
+                siftDown(heap, 0, n);
+            }
+        }
+        for (int end = n - 1; end > 0; end--) {   // heap-sort: worst moves to the back
+            int tmp = heap[0]; heap[0] = heap[end]; heap[end] = tmp;
+            siftDown(heap, 0, end);
+        }
+        return heap;
+    }
+
+    private boolean better(int a, int b) {
+        return docScores[a] != docScores[b] ? docScores[a] > docScores[b] : a < b;
+    }
+
+    private void siftUp(int[] heap, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(heap[parent], heap[i])) break;
+            int tmp = heap[parent]; heap[parent] = heap[i]; heap[i] = tmp;
+            i = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int i, int n) {
+        while (true) {
+            int worst = i, l = 2 * i + 1, r = l + 1;
+            if (l < n && better(heap[worst], heap[l])) worst = l;
+            if (r < n && better(heap[worst], heap[r])) worst = r;
+            if (worst == i) return;
+            int tmp = heap[worst]; heap[worst] = heap[i]; heap[i] = tmp;
+            i = worst;
+        }
+    }
+
+    private static List<String> tokenize(String text) {
+        List<String> out = new ArrayList<>();
+        for (String w : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+"))
+            if (!w.isEmpty()) out.add(w);
+        return out;
+    }
+
+    /** Trigrams of the term padded with boundary markers, packed 16 bits per char. */
+    private static long[] grams(String text) {
+        String padded = '\u0002' + text + '\u0003';
+        long[] out = new long[padded.length() - 2];
+        for (int i = 0; i < out.length; i++)
+            out[i] = ((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2);
+        return out;
+    }
+
+    /** Levenshtein distance {@code <= max}, computed only inside the diagonal band. */
+    private boolean withinEdits(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) return false;
+        if (editRow.length <= b.length()) {
+            editRow = new int[b.length() + 1];
+            editPrev = new int[b.length() + 1];
+        }
+        int[] prev = editPrev, cur = editRow;
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            Arrays.fill(cur, max + 1);
+            cur[0] = i;
+            int rowMin = cur[0];
+            for (int j = Math.max(1, i - max); j <= Math.min(b.length(), i + max); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                cur[j] = Math.min(Math.min(prev[j] + 1, cur[j - 1] + 1), prev[j - 1] + cost);
+                rowMin = Math.min(rowMin, cur[j]);
+            }
+            if (rowMin > max) return false;
+            int[] swap = prev; prev = cur; cur = swap;
+        }
+        return prev[b.length()] <= max;
+    }
+}
+
+
 class InventoryManager implements Reportable {
 
   
@@ -69,16 +661,51 @@ class InventoryManager implements Reportable {
     private final Set<String> lowStockAlerts = new HashSet<>();
 
    
-    private final List<Double> priceList = new ArrayList<>();
+    private final PriceStats priceStats = new PriceStats();
+
+    // Running analytics, kept in step by addProduct/restock/sell (amounts in cents)
+    private long totalValueCents;
+    // Ranked by stock value, highest first (key = -value in cents; ties by SKU)
+    private final RankIndex<Product> byValue = new RankIndex<>(Comparator.comparing(Product::getSku));
+
+    // Secondary indexes for range and percentile queries (price in cents, quantity in units)
+    private final RankIndex<Product> byPrice = new RankIndex<>(Comparator.comparing(Product::getSku));
+    private final RankIndex<Product> byQuantity = new RankIndex<>(Comparator.comparing(Product::getSku));
+
+    private final NameSearchIndex nameIndex = new NameSearchIndex();
+
+    // name → SKUs using it; names held by more than one SKU are mirrored in duplicateNames
+    private final Map<String, Set<String>> skusByName = new HashMap<>();
+    private final Set<String> duplicateNames = new LinkedHashSet<>();
+    private final List<DuplicateNameListener> duplicateListeners = new ArrayList<>();
 
     private static final int LOW_STOCK_THRESHOLD = 10;
 
    
-    /** Add a new product to the inventory. */
+    /** Add a new product to the inventory (replaces any product with the same SKU). */
     public void addProduct(Product p) {
-        catalog.put(p.getSku(), p);
+        Product previous = catalog.put(p.getSku(), p);
+        // a re-add under the same name keeps its place in the name map and raises no new duplicate event
+        boolean sameName = previous != null && previous.getName().equals(p.getName());
+        if (previous != null) {
+            totalValueCents -= valueCents(previous);
+            byValue.remove(-valueCents(previous), previous);
+            byPrice.remove(cents(previous.getUnitPrice()), previous);
+            byQuantity.remove(previous.getQuantity(), previous);
+            List<Product> oldCategory = byCategory.get(previous.getCategory());
+            oldCategory.remove(previous);
+            if (oldCategory.isEmpty()) byCategory.remove(previous.getCategory());
+            priceStats.remove(previous.getUnitPrice());
+            if (!sameName) unindexName(previous);
+        }
         byCategory.computeIfAbsent(p.getCategory(), k -> new ArrayList<>()).add(p);
-        priceList.add(p.getUnitPrice());
+        priceStats.add(p.getUnitPrice());
+        totalValueCents += valueCents(p);
+        byValue.add(-valueCents(p), p);
+        byPrice.add(cents(p.getUnitPrice()), p);
+        byQuantity.add(p.getQuantity(), p);
+        nameIndex.add(p);
+        if (!sameName) indexName(p);
         checkLowStock(p);
         System.out.println("  [ADDED] " + p);
     }
@@ -91,7 +718,11 @@ class InventoryManager implements Reportable {
     /** Restock a product; enqueues a log entry and updates quantity. */
     public void restock(String sku, int units) {
         findBySku(sku).ifPresentOrElse(p -> {
+            long before = valueCents(p);
+            int quantityBefore = p.getQuantity();
             p.restock(units);
+            totalValueCents += valueCents(p) - before;
+            reindex(p, before, quantityBefore);
             restockQueue.offer("RESTOCK | " + sku + " | +" + units + " units | New Qty: " + p.getQuantity());
             lowStockAlerts.remove(sku); // clear alert if restocked
             System.out.printf("  [RESTOCK] %s +%d units → qty now %d%n", sku, units, p.getQuantity());
@@ -101,12 +732,37 @@ class InventoryManager implements Reportable {
     /** Sell units of a product and check low-stock after. */
     public void sell(String sku, int units) {
         findBySku(sku).ifPresentOrElse(p -> {
+            long before = valueCents(p);
+            int quantityBefore = p.getQuantity();
             p.sell(units);
+            totalValueCents += valueCents(p) - before;
+            reindex(p, before, quantityBefore);
             checkLowStock(p);
             System.out.printf("  [SOLD]  %s -%d units → qty now %d%n", sku, units, p.getQuantity());
         }, () -> System.out.println("  [ERROR] SKU not found: " + sku));
     }
 
+    public void addDuplicateNameListener(DuplicateNameListener listener) {
+        duplicateListeners.add(listener);
+    }
+
+    private void indexName(Product p) {
+        Set<String> skus = skusByName.computeIfAbsent(p.getName(), k -> new LinkedHashSet<>());
+        skus.add(p.getSku());
+        if (skus.size() > 1) {
+            duplicateNames.add(p.getName());
+            Set<String> view = Collections.unmodifiableSet(skus);
+            duplicateListeners.forEach(l -> l.duplicateDetected(p.getName(), p.getSku(), view));
+        }
+    }
+
+    private void unindexName(Product p) {
+        Set<String> skus = skusByName.get(p.getName());
+        skus.remove(p.getSku());
+        if (skus.size() < 2) duplicateNames.remove(p.getName());
+        if (skus.isEmpty()) skusByName.remove(p.getName());
+    }
+
     /** Flag item as low-stock if below threshold. */
     private void checkLowStock(Product p) {
         if (p.getQuantity() < LOW_STOCK_THRESHOLD) {
@@ -114,25 +770,103 @@ class InventoryManager implements Reportable {
         }
     }
 
-    /** Total inventory value across all products. */
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static long valueCents(Product p) {
+        return p.getQuantity() * cents(p.getUnitPrice());
+    }
+
+    /** Re-file a product in the value ranking and quantity index after its quantity changed. */
+    private void reindex(Product p, long previousValueCents, int previousQuantity) {
+        byValue.remove(-previousValueCents, p);
+        byValue.add(-valueCents(p), p);
+        byQuantity.remove(previousQuantity, p);
+        byQuantity.add(p.getQuantity(), p);
+    }
+
+    /** Total inventory value across all products — O(1), maintained on every stock change. */
     public double computeTotalValue() {
-        return catalog.values().stream()
-                .mapToDouble(Stockable::getTotalValue)
-                .sum();
+        return totalValueCents / 100.0;
     }
 
-    /** Average unit price across all products. */
+    /** Average unit price across the catalog — O(1) from the running stats. */
     public double computeAveragePrice() {
-        return priceList.stream()
-                .mapToDouble(Double::doubleValue)
-                .average()
-                .orElse(0.0);
+        return priceStats.getMean();
+    }
+
+    /** Population standard deviation of unit prices — O(1). */
+    public double computePriceStdDev() {
+        return priceStats.getStdDev();
+    }
+
+    /**
+     * Unit-price quantile, e.g. 0.5 for the median, interpolating linearly
+     * between ranks — O(log n) via the price index.
+     */
+    public double computePriceQuantile(double q) {
+        if (q < 0 || q > 1) throw new IllegalArgumentException("q must be within [0, 1]");
+        int n = byPrice.size();
+        if (n == 0) return Double.NaN;
+        double rank = q * (n - 1);
+        int lo = (int) rank;
+        long below = byPrice.keyAt(lo);
+        long above = byPrice.keyAt(Math.min(lo + 1, n - 1));
+        return (below + (rank - lo) * (above - below)) / 100.0;
     }
 
-    /** Most expensive product by unit price. */
+    /** Most expensive product by unit price — O(log n) via the price index (lowest SKU on ties). */
     public Optional<Product> findMostExpensive() {
-        return catalog.values().stream()
-                .max(Comparator.comparingDouble(Product::getUnitPrice));
+        if (byPrice.size() == 0) return Optional.empty();
+        long top = byPrice.keyAt(byPrice.size() - 1);
+        return Optional.of(byPrice.get(byPrice.countBelow(top)));
+    }
+
+    /**
+     * Products matching every given constraint (bounds inclusive; null category =
+     * any). Each index reports its match count in O(log n) — the category index
+     * by list size — and the smallest candidate set drives the scan while the
+     * other predicates filter it, so cost follows the most selective index.
+     */
+    public List<Product> findProducts(String category, double minPrice, double maxPrice,
+                                      int minQty, int maxQty) {
+        long lo = cents(minPrice), hi = cents(maxPrice);
+        List<Product> inCategory = category == null ? null : byCategory.getOrDefault(category, List.of());
+        int priceMatches = byPrice.countInRange(lo, hi);
+        int qtyMatches = byQuantity.countInRange(minQty, maxQty);
+
+        List<Product> out = new ArrayList<>();
+        java.util.function.Consumer<Product> keep = p -> {
+            long price = cents(p.getUnitPrice());
+            if (price >= lo && price <= hi
+                    && p.getQuantity() >= minQty && p.getQuantity() <= maxQty
+                    && (category == null || category.equals(p.getCategory())))
+                out.add(p);
+        };
+        if (inCategory != null && inCategory.size() <= Math.min(priceMatches, qtyMatches)) {
+            inCategory.forEach(keep);
+        } else if (priceMatches <= qtyMatches) {
+            byPrice.forEachInRange(lo, hi, keep);
+        } else {
+            byQuantity.forEachInRange(minQty, maxQty, keep);
+        }
+        return out;
+    }
+
+    /** SKUs ranked by how well their names match {@code query} (prefix and typo tolerant). */
+    public List<String> searchByName(String query, int limit) {
+        return nameIndex.search(query, limit);
+    }
+
+    /** Share of products priced strictly below {@code price}, in [0, 1] — O(log n). */
+    public double pricePercentile(double price) {
+        return byPrice.size() == 0 ? 0.0 : (double) byPrice.countBelow(cents(price)) / byPrice.size();
+    }
+
+    /** Share of products holding strictly fewer than {@code quantity} units — O(log n). */
+    public double quantityPercentile(int quantity) {
+        return byQuantity.size() == 0 ? 0.0 : (double) byQuantity.countBelow(quantity) / byQuantity.size();
     }
 
     /** Find all unique categories (TreeMap keys — already unique & sorted). */
@@ -141,20 +875,34 @@ class InventoryManager implements Reportable {
     }
 
    
+    /** Names shared by more than one SKU, in the order they became duplicates. */
     public List<String> findDuplicateNames() {
-        Map<String, Long> nameCounts = catalog.values().stream()
-                .collect(Collectors.groupingBy(Product::getName, Collectors.counting()));
-        return nameCounts.entrySet().stream()
-                .filter(e -> e.getValue() > 1)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toList());
+        return new ArrayList<>(duplicateNames);
+    }
+
+    /** Live read-only view of duplicate names — O(1), maintained by addProduct. */
+    public Set<String> getDuplicateNames() {
+        return Collections.unmodifiableSet(duplicateNames);
+    }
+
+    /** SKUs currently using {@code name}. */
+    public Set<String> getSkusByName(String name) {
+        return Collections.unmodifiableSet(skusByName.getOrDefault(name, Set.of()));
     }
 
     /** Products sorted by total stock value descending (most valuable first). */
     public List<Product> getProductsByValue() {
-        return catalog.values().stream()
-                .sorted(Comparator.comparingDouble(Stockable::getTotalValue).reversed())
-                .collect(Collectors.toList());
+        return byValue.page(0, byValue.size());
+    }
+
+    /** One page of the value ranking — O(log n + limit), no sort. */
+    public List<Product> getProductsByValue(int offset, int limit) {
+        return byValue.page(offset, limit);
+    }
+
+    /** The {@code k} most valuable products. */
+    public List<Product> getTopByValue(int k) {
+        return byValue.page(0, k);
     }
 
 
@@ -184,6 +932,7 @@ class InventoryManager implements Reportable {
         System.out.println("\n[ ANALYTICS ]");
         System.out.printf("  Total Inventory Value   : $%,.2f%n", computeTotalValue());
         System.out.printf("  Average Unit Price      : $%.2f%n",  computeAveragePrice());
+        System.out.printf("  Median Unit Price       : $%.2f (σ $%.2f)%n", computePriceQuantile(0.5), computePriceStdDev());
         findMostExpensive().ifPresent(p ->
                 System.out.printf("  Most Expensive Product  : %s ($%.2f)%n", p.getName(), p.getUnitPrice()));
         System.out.println("  Unique Categories       : " + getUniqueCategories());
@@ -231,6 +980,8 @@ public class InventoryCollections {
     public static void main(String[] args) {
 
         InventoryManager manager = new InventoryManager();
+        manager.addDuplicateNameListener((name, sku, skus) ->
+                System.out.println("  [DUPLICATE] \"" + name + "\" now used by " + skus));
 
         System.out.println("\n=== Adding Products ===");
         manager.addProduct(new Product("SKU-001", "Basmati Rice 5kg",    "Grains",       50,  599.00));
@@ -250,6 +1001,13 @@ public class InventoryCollections {
         manager.restock("SKU-003", 50);  // clears low stock alert
         manager.restock("SKU-001", 100); // clears low stock alert
 
+        System.out.println("\n=== Range Query: priced 100–500 with qty < 20 ===");
+        manager.findProducts(null, 100, 500, 0, 19).forEach(p -> System.out.println("  " + p));
+
+        System.out.println("\n=== Name Search ===");
+        for (String q : List.of("basmati", "usb hu", "chedar chese"))
+            System.out.printf("  %-15s → %s%n", "\"" + q + "\"", manager.searchByName(q, 5));
+
         // Print full report
         manager.printReport();
     }
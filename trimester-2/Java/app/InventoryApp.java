@@ -10,13 +10,15 @@ import java.util.List;
 /** Public main class as requested. */
 public class InventoryApp {
 
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
         System.out.println("\n=== Inventory Management System — Demo & Tests ===\n");
 
         // Create pricing strategies via interface ref
         PricingStrategy flat = new FlatRatePricing();
         PricingStrategy bulk10 = new BulkDiscountStrategy(10, 0.10);
         PricingStrategy clearance5d = new ClearancePricing(5, 0.30);
+        PricingStrategy stacked = PricingPipeline.builder() // bulk → clearance → GST
+                .then(bulk10).then(clearance5d).then(new GstPricing(0.18)).build();
 
         // Create items using interface references (polymorphism)
         StockItem rice = BaseStockItem.of("SKU-001", "Basmati Rice 5kg", "Aisle 3 / Bin B", 600.00, 50);
@@ -41,12 +43,20 @@ public class InventoryApp {
         boolean ok3 = laptop.reserve(2);
         laptop.shipReserved(2);
 
+        // Multi-line order: all-or-nothing reservation across items
+        OrderReservationService orders = new OrderReservationService();
+        boolean ok4 = !orders.reserveAll(List.of(
+                new OrderReservationService.OrderLine(rice, 5),
+                new OrderReservationService.OrderLine(laptop, 99))); // laptop short → rolled back
+        ok4 &= rice.getQuantityReserved() == 0;
+
         // Pricing demonstrations through PricingStrategy interface ref
         printPrice(rice, 8, flat);
         printPrice(rice, 12, bulk10);
         printPrice(milk, 3, flat);
         printPrice(milk, 3, clearance5d); // near expiry → markdown applies
         printPrice(laptop, 1, flat);
+        printPrice(milk, 12, stacked);
 
         // Pretty print item state & selected audit lines
         printItemSummary(rice);
@@ -57,10 +67,319 @@ public class InventoryApp {
         assert ok1 : "Rice reservation should succeed";
         assert ok2 : "Milk reservation should succeed before expiry";
         assert ok3 : "Laptop reservation should succeed with stock";
+        assert ok4 : "Failed multi-line order should leave nothing reserved";
+        checkSerialReservations();
+        checkSerialReservationRollback();
+        checkSerialStorage();
+        checkBoundedAuditRing();
+        checkAuditSpill();
+        checkAuditFailure();
+        checkJournalRecovery();
+        checkManualClock();
+        checkQuoteCache();
+        checkFefoLots();
+        checkExpiryIndex();
+        checkExpirySweep();
 
         System.out.println("\nAll tests executed. If no assertion errors were printed, the demo passed.\n");
     }
 
+    /** Serial-bound reservations; a private index keeps the global one clean. */
+    private static void checkSerialReservations() {
+        SerialIndex index = new SerialIndex(128);
+        List<String> serials = new java.util.ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            serials.add(String.format("T-%03d", i));
+        SerializedItem item = new SerializedItem("SKU-T", "Tablet", "Cage 3", 300.00, 100, serials, index);
+
+        assert item.reserveSerial("T-070") : "Reserving an in-stock serial should succeed";
+        assert !item.reserveSerial("T-070") : "A serial cannot be reserved twice";
+        assert !item.reserveSerial("T-999") : "Unknown serials cannot be reserved";
+        assert item.reserve(2) : "FIFO reservation should succeed";
+        assert item.getReservedSerials().equals(List.of("T-000", "T-001", "T-070"))
+                : "Reserved serials should be listed in receiving order";
+        assert index.stateOf("T-070") == SerialIndex.State.RESERVED : "Index should mirror reservations";
+
+        assert item.releaseSerial("T-001") : "Releasing a reserved serial should succeed";
+        assert !item.releaseSerial("T-001") : "A released serial is no longer reserved";
+        assert item.getQuantityReserved() == 2 : "Releasing a serial releases one unit";
+        assert "T-001".equals(item.peekNextSerial()) : "Released serial is next in FIFO order";
+
+        assert item.shipReserved(2) : "Shipping reserved units should succeed";
+        assert index.stateOf("T-000") == SerialIndex.State.SHIPPED : "Shipped serials are marked SHIPPED";
+        assert index.stateOf("T-070") == SerialIndex.State.SHIPPED : "Serial-bound reservation ships that serial";
+        assert item.getReservedSerials().isEmpty() : "Nothing stays reserved after shipping";
+
+        // 70 units run from slot 1 across the first 64-slot word, past the shipped T-070
+        assert item.reserve(70) && item.shipReserved(70) : "Shipping across a bitset word should succeed";
+        assert index.stateOf("T-071") == SerialIndex.State.SHIPPED : "FIFO skips the already-shipped T-070";
+        assert "T-072".equals(item.peekNextSerial()) : "FIFO resumes after the shipped run";
+        assert item.getQuantityOnHand() == 28 : "On-hand should track shipped serials";
+        assert item.reserveSerial("T-099") : "By-serial reservation still works past the dropped head";
+        assert item.getReservedSerials().equals(List.of("T-099")) : "Reserved serial decodes after the head moved";
+    }
+
+    /** Rolling back a count-based order line must not cancel a reservation made by serial. */
+    private static void checkSerialReservationRollback() {
+        SerialIndex index = new SerialIndex(128);
+        SerializedItem item = new SerializedItem("SKU-R", "Router", "Cage 5", 80.00, 4,
+                List.of("R-1", "R-2", "R-3", "R-4"), index);
+        StockItem empty = BaseStockItem.of("SKU-R0", "Router Mount", "Cage 5", 5.00, 0);
+        assert item.reserveSerial("R-3") : "Reserving an in-stock serial should succeed";
+        boolean ok = new OrderReservationService().reserveAll(List.of(
+                new OrderReservationService.OrderLine(item, 1),
+                new OrderReservationService.OrderLine(empty, 1)));
+        assert !ok : "An order with an out-of-stock line should fail";
+        assert item.getReservedSerials().equals(List.of("R-3")) : "Rollback keeps the by-serial reservation";
+        assert index.stateOf("R-1") == SerialIndex.State.IN_STOCK : "Rollback frees the count-based serial";
+        item.release(1);
+        assert item.getReservedSerials().isEmpty() : "A by-serial reservation is released once nothing else is held";
+    }
+
+    /** Front-coded serial storage must decode exactly, including after the shipped head is dropped. */
+    private static void checkSerialStorage() {
+        SerialIndex index = new SerialIndex(128);
+        List<String> serials = new java.util.ArrayList<>();
+        for (int i = 0; i < 40; i++)
+            serials.add("BOX-" + i); // prefixes shared, lengths vary
+        for (int i = 40; i < 80; i++)
+            serials.add(i == 70 ? "\u017D-" + i : "CRATE-2024-" + (1000 - i)); // one non-Latin-1 serial
+        SerializedItem item = new SerializedItem("SKU-S", "Spare Part", "Cage 4", 10.00, 80, serials, index);
+
+        assert item.reserve(64) && item.shipReserved(64) : "Shipping the first 64-slot word should succeed";
+        assert serials.get(64).equals(item.peekNextSerial()) : "Next serial decodes after dropping the head";
+        assert item.reserveSerial(serials.get(70)) : "Wide serial is found after the head moved";
+        assert item.getReservedSerials().equals(List.of(serials.get(70))) : "Wide serial decodes exactly";
+
+        item.restockWithSerial("BOX-NEW");
+        assert item.reserve(16) : "Remaining stock should be reservable";
+        List<String> expected = new java.util.ArrayList<>(serials.subList(64, 80));
+        expected.add("BOX-NEW");
+        assert item.getReservedSerials().equals(expected) : "Every kept serial decodes in receiving order";
+    }
+
+    /** Writers lapping a small ring under contention must all finish and lose no event. */
+    private static void checkBoundedAuditRing() throws InterruptedException {
+        AuditTrail spill = new AuditTrail();
+        AuditTrail ring = new AuditTrail(8, spill);
+        int writers = 8, perWriter = 20_000;
+        Thread[] threads = new Thread[writers];
+        for (int t = 0; t < writers; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++)
+                    ring.append(interfaces.AuditStore.Op.NOTE, i, id, i, 0, null);
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads)
+            t.join();
+        long total = (long) writers * perWriter;
+        assert ring.size() + ring.getEvictedCount() == total : "Every event is held or evicted";
+        assert spill.size() == ring.getEvictedCount() : "Every evicted event reaches the spill store";
+        assert ring.render().size() == total : "Rendered history covers every event";
+    }
+
+    /** A bounded trail spilling to disk must render the same history as an unbounded one. */
+    private static void checkAuditSpill() throws java.io.IOException {
+        ManualClock clock = ManualClock.at(LocalDate.of(2025, 1, 1)); // identical timestamps for both items
+        try (AuditSpillFile spill = new AuditSpillFile(java.nio.file.Files.createTempDirectory("spill"), 4096)) {
+            AuditTrail bounded = new AuditTrail(4, spill.newStore());
+            BaseStockItem small = BaseStockItem.of("SKU-P", "Pallet", "Dock 1", 3.00, 10, bounded, clock);
+            BaseStockItem full = BaseStockItem.of("SKU-P", "Pallet", "Dock 1", 3.00, 10, new AuditTrail(), clock);
+            for (int i = 0; i < 200; i++) {
+                for (BaseStockItem item : List.of(small, full)) {
+                    item.reserve(2);
+                    item.release(1);
+                    item.restock(1);
+                }
+                clock.advanceMillis(1);
+            }
+            assert bounded.getEvictedCount() > 0 : "The ring should have spilled";
+            assert spill.segmentCount() > 1 : "Spill should span several segments";
+            assert small.getAuditLog().equals(full.getAuditLog()) : "Spilled history reads back in order";
+        }
+    }
+
+    /** A failing audit store must not turn a committed mutation into an exception. */
+    private static void checkAuditFailure() {
+        interfaces.AuditStore broken = new interfaces.AuditStore() {
+            @Override
+            public void append(Op op, long epochNanos, int delta, int onHand, int reserved, String note) {
+                throw new IllegalStateException("audit store unavailable");
+            }
+
+            @Override
+            public int size() {
+                return 0;
+            }
+
+            @Override
+            public List<String> render() {
+                return List.of();
+            }
+        };
+        BaseStockItem item = BaseStockItem.of("SKU-A", "Adapter", "Shelf 9", 2.00, 5, broken);
+        assert item.reserve(2) : "Reservation succeeds even when auditing fails";
+        assert item.getQuantityReserved() == 2 : "The reservation is applied";
+        assert item.getAuditFailureCount() == 2 : "INIT and RESERVE failures are counted";
+        assert item.getLastAuditFailure() instanceof IllegalStateException : "The last failure is kept";
+    }
+
+    /** Items and pricing read time only from the injected clock, so a manual clock drives them exactly. */
+    private static void checkManualClock() {
+        LocalDate start = LocalDate.of(2025, 3, 10);
+        ManualClock clock = ManualClock.at(start);
+        clock.advanceMillis(86_399_999L);
+        assert clock.today().equals(start) : "Still the same day one millisecond before midnight";
+        clock.advanceMillis(1);
+        assert clock.today().equals(start.plusDays(1)) : "Today flips exactly at midnight";
+
+        PerishableItem yogurt = new PerishableItem("SKU-Y", "Yogurt", "Chiller 2", 40.00, 10, start.plusDays(3), clock);
+        assert yogurt.getAuditLog().get(0).startsWith(start.plusDays(1) + "T") : "Audit timestamps come from the clock";
+        PricingStrategy clearance = new ClearancePricing(1, 0.50, clock);
+        assert clearance.price(yogurt, 2) == 80.00 : "No markdown outside the clearance window";
+        clock.advanceDays(1);
+        assert clearance.price(yogurt, 2) == 40.00 : "Markdown applies once expiry is within the window";
+        assert yogurt.reserve(1) : "Stock can be reserved the day before it expires";
+        clock.advanceDays(1);
+        assert !yogurt.reserve(1) : "Stock cannot be reserved on its expiry day";
+    }
+
+    /** Cached quotes must be dropped when lots change or the clearance window moves at midnight. */
+    private static void checkQuoteCache() {
+        LocalDate start = LocalDate.of(2025, 6, 1);
+        ManualClock clock = ManualClock.at(start);
+        PerishableItem bread = new PerishableItem("SKU-B", "Bread", "Rack 1", 50.00, 10, start.plusDays(2), clock);
+        StockItem flour = BaseStockItem.of("SKU-F", "Flour", "Rack 2", 90.00, 10);
+        PricingStrategy clearance = new ClearancePricing(1, 0.50, clock);
+        QuoteCache cache = new QuoteCache(2, clock);
+
+        assert cache.quotePaise(bread, 2, clearance) == 10_000 : "Full price outside the window";
+        assert cache.quotePaise(bread, 2, clearance) == 10_000 && cache.getHits() == 1 : "Repeat quote is a hit";
+        assert bread.reserve(1) && cache.quotePaise(bread, 2, clearance) == 10_000 : "Lot change recomputes";
+        assert cache.getInvalidations() == 1 && cache.getMisses() == 2 : "A lot change invalidates the quote";
+
+        clock.advanceDays(1);
+        assert cache.quotePaise(bread, 2, clearance) == 5_000 : "Markdown shows after midnight, not the cached price";
+        cache.quotePaise(flour, 1, clearance);
+        cache.quotePaise(flour, 2, clearance);
+        assert cache.size() == 2 && cache.getEvictions() == 1 : "Least recently used quote is evicted at capacity";
+    }
+
+    /** Lots are reserved and shipped earliest-expiry first, skipping lots that expire today. */
+    private static void checkFefoLots() {
+        LocalDate today = LocalDate.of(2025, 8, 1);
+        ManualClock clock = ManualClock.at(today);
+        PerishableItem juice = new PerishableItem("SKU-U", "Juice", "Chiller 4", 30.00, 5, today.plusDays(5), clock);
+        juice.addLot(4, today.plusDays(2));
+        juice.addLot(3, today); // expires today: counted on hand, never reserved
+
+        assert juice.getLots().equals(List.of(new PerishableItem.Lot(today, 3, 0),
+                new PerishableItem.Lot(today.plusDays(2), 4, 0),
+                new PerishableItem.Lot(today.plusDays(5), 5, 0))) : "Lots are kept in expiry order";
+        assert juice.reserve(6) : "Reservation draws from usable lots";
+        assert juice.getLots().get(0).reserved() == 0 : "The lot expiring today is skipped";
+        assert juice.getLots().get(1).reserved() == 4 && juice.getLots().get(2).reserved() == 2
+                : "The earliest usable lot is drawn down first";
+        assert !juice.reserve(4) : "Units in a lot expiring today cannot be reserved";
+        juice.release(1);
+        assert juice.getLots().get(2).reserved() == 1 : "Release gives back the latest-expiring units first";
+        assert juice.shipReserved(5) : "Shipping reserved units should succeed";
+        assert juice.getLots().equals(List.of(new PerishableItem.Lot(today, 3, 0),
+                new PerishableItem.Lot(today.plusDays(5), 4, 0))) : "Shipping empties the early lot and drops it";
+        assert today.equals(juice.getExpiryDate()) : "Expiry date is the earliest lot's";
+    }
+
+    /** Range queries follow each item's earliest lot as lots arrive and ship. */
+    private static void checkExpiryIndex() {
+        LocalDate start = LocalDate.of(2025, 9, 1);
+        ManualClock clock = ManualClock.at(start);
+        PerishableItem cheese = new PerishableItem("SKU-C", "Cheese", "Chiller 3", 200.00, 5, start.plusDays(10), clock);
+        PerishableItem eggs = new PerishableItem("SKU-E", "Eggs", "Chiller 3", 6.00, 30, start.plusDays(3), clock);
+        ExpiryIndex index = new ExpiryIndex(clock);
+        index.track(cheese);
+        index.track(eggs);
+
+        assert index.expiringWithin(3).equals(List.of(eggs)) : "Only eggs expire within three days";
+        assert index.expired().isEmpty() : "Nothing has expired yet";
+        cheese.addLot(2, start.plusDays(1));
+        assert index.expiringWithin(1).equals(List.of(cheese)) : "An earlier lot re-keys the item";
+        assert cheese.reserve(2) && cheese.shipReserved(2) : "FEFO ships the early lot";
+        assert index.expiringWithin(3).equals(List.of(eggs)) : "Shipping the early lot re-keys the item back";
+        clock.advanceDays(3);
+        assert index.expired().equals(List.of(eggs)) : "Stock expiring today counts as expired";
+        assert start.plusDays(3).equals(index.earliestExpiry()) : "Earliest expiry is the eggs' date";
+    }
+
+    /** A sweep on the expiry day writes off the expired lots, reserved units included, once per day. */
+    private static void checkExpirySweep() {
+        LocalDate start = LocalDate.of(2025, 11, 3);
+        ManualClock clock = ManualClock.at(start);
+        PerishableItem fish = new PerishableItem("SKU-H", "Fish", "Freezer 1", 120.00, 4, start.plusDays(1), clock);
+        fish.addLot(6, start.plusDays(4));
+        PerishableItem herbs = new PerishableItem("SKU-G", "Herbs", "Chiller 5", 15.00, 8, start.plusDays(1), clock);
+        ExpirySweeper sweeper = new ExpirySweeper(clock);
+        sweeper.track(fish);
+        sweeper.track(herbs);
+        long[] reported = new long[2];
+        sweeper.addListener((item, units, valuePaise) -> {
+            reported[0] += units;
+            reported[1] += valuePaise;
+        });
+
+        assert fish.reserve(2) : "The early lot can be reserved before it expires";
+        assert sweeper.sweepIfNewDay() == 0 : "Nothing is written off before the expiry day";
+        clock.advanceDays(1);
+        assert sweeper.sweepIfNewDay() == 12 : "Both expiring lots are written off on their expiry day";
+        assert sweeper.sweepIfNewDay() == 0 : "A day is swept only once";
+        assert fish.getQuantityOnHand() == 6 && fish.getQuantityReserved() == 0 : "Reserved expired units are written off";
+        assert herbs.getQuantityOnHand() == 0 && herbs.getLots().isEmpty() : "An item can be written off entirely";
+        assert sweeper.size() == 1 : "Emptied items leave the sweeper's index; the rest are re-keyed";
+        assert reported[0] == 12 && reported[1] == 4 * 12_000 + 8 * 1_500 : "Listeners get units and value";
+        assert sweeper.getWrittenOffValuePaise() == reported[1] : "Totals match what listeners saw";
+        clock.advanceDays(3);
+        assert sweeper.sweepIfNewDay() == 6 : "The re-keyed item is swept when its next lot expires";
+    }
+
+    /** Replaying the journal — whole, after a reopen, or from a snapshot — must match the live items. */
+    private static void checkJournalRecovery() throws java.io.IOException {
+        java.nio.file.Path dir = java.nio.file.Files.createTempDirectory("journal");
+        java.nio.file.Path snapshot = dir.resolve("stock.snap");
+        List<StockItem> items = new java.util.ArrayList<>();
+        try (MappedAuditJournal journal = new MappedAuditJournal(dir, 4096)) { // small segments: replay spans several
+            for (int i = 0; i < 8; i++)
+                items.add(BaseStockItem.of("SKU-J" + i, "Journalled " + i, "Bay 7", 10.00, 100, journal.storeFor("SKU-J" + i)));
+            StockRecovery recovery = new StockRecovery(journal, 3);
+            for (int round = 0; round < 40; round++) {
+                StockItem item = items.get(round % items.size());
+                item.restock(5);
+                item.reserve(7);
+                item.shipReserved(3);
+                item.release(2);
+                if (round == 20)
+                    recovery.writeSnapshot(snapshot);
+            }
+            assert journal.segmentCount() > 1 : "Journal should span several segments";
+            assert matchesLive(recovery.replay(), items) : "Full replay matches live quantities";
+            assert matchesLive(recovery.recover(snapshot), items) : "Snapshot plus tail matches live quantities";
+        }
+        try (MappedAuditJournal reopened = new MappedAuditJournal(dir, 4096)) {
+            assert matchesLive(new StockRecovery(reopened, 2).replay(), items) : "Replay after reopening matches";
+        }
+    }
+
+    private static boolean matchesLive(StockRecovery.State state, List<StockItem> items) {
+        java.util.Map<String, int[]> recovered = new java.util.HashMap<>();
+        state.forEach((sku, onHand, reserved) -> recovered.put(sku, new int[] { onHand, reserved }));
+        for (StockItem item : items) {
+            int[] q = recovered.get(item.getSku());
+            if (q == null || q[0] != item.getQuantityOnHand() || q[1] != item.getQuantityReserved())
+                return false;
+        }
+        return recovered.size() == items.size();
+    }
+
     private static void printPrice(StockItem item, int qty, PricingStrategy strategy) {
         double amount = strategy.price(item, qty);
         System.out.printf("PRICE • %-22s × %2d using %-20s → ₹%,.2f%n",
@@ -0,0 +1,286 @@
+package impl;
+
+import interfaces.AuditStore;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared on-disk overflow store for bounded {@link AuditTrail}s.
+ *
+ * Evicted events are written as compact variable-length records into
+ * memory-mapped segment files with varints for the event fields, so a numeric
+ * event takes 32 bytes (padded to 8) against 64 in a {@link MappedAuditJournal}.
+ * Space is claimed with a CAS on the tail and a record is published by writing
+ * its length last (release store), so appends take no lock and make no syscall.
+ *
+ * Each item's records form a backward chain (every record holds the position
+ * of the item's previous one), and the per-item view keeps only the chain head
+ * and a count, so heap use per item stays constant however much is spilled.
+ * History is read back on demand by walking that chain. The files are scratch
+ * space: they are cleared on open and not read back after a restart; use a
+ * journal when history must be durable.
+ *
+ * Record layout: [0] length (int, 0 = unpublished) [4] previous position of
+ * the same item (long, -1 = none), then varints: op, epoch-nanos, delta,
+ * onHand, reserved (zig-zag), note length, followed by the UTF-8 note bytes.
+ */
+public class AuditSpillFile implements Closeable {
+
+    private static final int MIN_SEGMENT = 4096;
+    private static final int MAX_NOTE = 1024;
+    private static final long CHAIN_WAIT_NANOS = 10_000_000L;
+    private static final VarHandle HEADER =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    /** Create (or clear) a spill area in {@code dir}. */
+    public AuditSpillFile(Path dir, int segmentBytes) {
+        if (segmentBytes < MIN_SEGMENT)
+            throw new IllegalArgumentException("segmentBytes must be at least " + MIN_SEGMENT);
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        try {
+            Files.createDirectories(dir);
+            for (int i = 0; Files.deleteIfExists(segmentPath(i)); i++) {
+                // previous run's spill is not reused
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open audit spill in " + dir, e);
+        }
+    }
+
+    /** A new per-item view; pass it as the spill store of that item's {@link AuditTrail}. */
+    public AuditStore newStore() {
+        return new ItemSpill();
+    }
+
+    /** Bytes written so far, including padding left at segment ends. */
+    public long length() {
+        return tail.get();
+    }
+
+    /** Number of mapped segment files. */
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    /** Flush mapped pages to disk. */
+    public void force() {
+        for (MappedByteBuffer seg : segments)
+            seg.force();
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    // —— internals ——
+
+    private void write(AtomicLong head, AuditStore.Op op, long nanos, int delta, int onHand, int reserved, String note) {
+        byte[] text = null;
+        if (note != null) {
+            text = note.getBytes(StandardCharsets.UTF_8);
+            if (text.length > MAX_NOTE)
+                text = Arrays.copyOf(text, MAX_NOTE);
+        }
+        int noteLength = text == null ? 0 : text.length;
+        int len = 12 + varLength(op.ordinal()) + varLength(nanos)
+                + varLength(zigzag(delta)) + varLength(zigzag(onHand)) + varLength(zigzag(reserved))
+                + varLength(noteLength) + noteLength;
+        len = (len + 7) & ~7; // keeps the length word and link aligned for atomic access
+        long pos = claim(len);
+        MappedByteBuffer seg = segment((int) (pos / segmentBytes));
+        int p = (int) (pos % segmentBytes);
+        seg.putLong(p + 4, head.getAndSet(pos));
+        p += 12;
+        p = putVar(seg, p, op.ordinal());
+        p = putVar(seg, p, nanos);
+        p = putVar(seg, p, zigzag(delta));
+        p = putVar(seg, p, zigzag(onHand));
+        p = putVar(seg, p, zigzag(reserved));
+        p = putVar(seg, p, noteLength);
+        if (text != null)
+            seg.put(p, text);
+        HEADER.setRelease(seg, (int) (pos % segmentBytes), len);
+    }
+
+    /** Reserve {@code len} bytes that do not straddle a segment boundary. */
+    private long claim(int len) {
+        while (true) {
+            long pos = tail.get();
+            long room = segmentBytes - pos % segmentBytes;
+            long start = room < len ? pos + room : pos;
+            if (tail.compareAndSet(pos, start + len))
+                return start;
+        }
+    }
+
+    /**
+     * Records on the chain from {@code head}, oldest first. Links follow the
+     * order writers swapped the head, so positions are sorted before decoding.
+     * Waits briefly for writers still filling a linked record.
+     */
+    private List<String> render(long head) {
+        long[] positions = new long[16];
+        int n = 0;
+        long deadline = System.nanoTime() + CHAIN_WAIT_NANOS;
+        long[] cursor = new long[1];
+        for (long pos = head; pos >= 0; ) {
+            MappedByteBuffer seg = published(pos, deadline);
+            if (seg == null)
+                break; // writer stalled; older history is unreachable for now
+            if (n == positions.length)
+                positions = Arrays.copyOf(positions, n * 2);
+            positions[n++] = pos;
+            pos = seg.getLong((int) (pos % segmentBytes) + 4);
+        }
+        Arrays.sort(positions, 0, n);
+        List<String> out = new ArrayList<>(n);
+        for (int k = 0; k < n; k++) {
+            MappedByteBuffer seg = segments[(int) (positions[k] / segmentBytes)];
+            cursor[0] = positions[k] % segmentBytes + 12;
+            AuditStore.Op op = AuditStore.Op.of((int) getVar(seg, cursor));
+            long nanos = getVar(seg, cursor);
+            int delta = unzigzag(getVar(seg, cursor));
+            int onHand = unzigzag(getVar(seg, cursor));
+            int reserved = unzigzag(getVar(seg, cursor));
+            int noteLength = (int) getVar(seg, cursor);
+            String note = null;
+            if (noteLength > 0) {
+                byte[] bytes = new byte[noteLength];
+                seg.get((int) cursor[0], bytes);
+                note = new String(bytes, StandardCharsets.UTF_8);
+            }
+            out.add(AuditStore.format(op, nanos, delta, onHand, reserved, note));
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    /** Segment holding the record at {@code pos} once it is published, or null at the deadline. */
+    private MappedByteBuffer published(long pos, long deadline) {
+        int off = (int) (pos % segmentBytes);
+        while (true) {
+            MappedByteBuffer[] segs = segments;
+            long index = pos / segmentBytes;
+            if (index < segs.length && (int) HEADER.getAcquire(segs[(int) index], off) != 0)
+                return segs[(int) index];
+            if (System.nanoTime() >= deadline)
+                return null;
+            Thread.onSpinWait();
+        }
+    }
+
+    private MappedByteBuffer segment(int index) {
+        MappedByteBuffer[] segs = segments;
+        if (index < segs.length)
+            return segs[index];
+        synchronized (this) {
+            segs = segments;
+            if (index < segs.length)
+                return segs[index];
+            MappedByteBuffer[] grown = Arrays.copyOf(segs, index + 1);
+            for (int i = segs.length; i <= index; i++)
+                grown[i] = map(i);
+            segments = grown;
+            return grown[index];
+        }
+    }
+
+    private MappedByteBuffer map(int index) {
+        try (FileChannel ch = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map audit spill segment " + index, e);
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return dir.resolve(String.format("spill-%06d.seg", index));
+    }
+
+    // —— varints ——
+
+    private static long zigzag(int v) {
+        return ((v << 1) ^ (v >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static int unzigzag(long v) {
+        int u = (int) v;
+        return (u >>> 1) ^ -(u & 1);
+    }
+
+    private static int varLength(long v) {
+        int n = 1;
+        while ((v & ~0x7FL) != 0) {
+            v >>>= 7;
+            n++;
+        }
+        return n;
+    }
+
+    private static int putVar(MappedByteBuffer seg, int p, long v) {
+        while ((v & ~0x7FL) != 0) {
+            seg.put(p++, (byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        seg.put(p++, (byte) v);
+        return p;
+    }
+
+    private static long getVar(MappedByteBuffer seg, long[] cursor) {
+        int p = (int) cursor[0];
+        long v = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = seg.get(p++);
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                cursor[0] = p;
+                return v;
+            }
+        }
+    }
+
+    /** Per-item view: just the newest record's position and a count. */
+    private final class ItemSpill implements AuditStore {
+        private final AtomicLong head = new AtomicLong(-1);
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void append(Op op, long epochNanos, int delta, int onHand, int reserved, String note) {
+            write(head, op, epochNanos, delta, onHand, reserved, note);
+            count.incrementAndGet();
+        }
+
+        @Override
+        public int size() {
+            return count.get();
+        }
+
+        @Override
+        public List<String> render() {
+            return AuditSpillFile.this.render(head.get());
+        }
+    }
+}
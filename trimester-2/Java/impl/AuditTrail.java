@@ -0,0 +1,215 @@
+package impl;
+
+import interfaces.AuditStore;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory audit store backed by chunks of parallel primitive arrays.
+ * Appending a numeric event allocates nothing once its chunk exists; a chunk's
+ * notes column is only created when a text note is first recorded in it.
+ *
+ * Appends are lock-free, so the CAS paths in {@link BaseStockItem} stay free of
+ * monitors: a writer claims a sequence number with getAndIncrement, fills that
+ * slot and publishes it by stamping the slot with its sequence (release store).
+ * Readers only take slots whose stamp matches, so in-flight events are skipped.
+ *
+ * Unbounded trails add chunks of doubling size (8, 16, 32, ...) installed by
+ * CAS; existing chunks never move. A bounded trail preallocates one ring of
+ * {@code retain} slots plus a small slack, so memory per item is constant; the
+ * writer that laps a slot hands the event it overwrites to the spill store
+ * (typically a view of a shared {@link AuditSpillFile}) and it is read back
+ * from there on demand. The slack keeps a lapping writer well behind any
+ * writer still filling its slot; if it does catch one (say, a writer preempted
+ * mid-append) it spins briefly, then yields, then parks until that slot is
+ * published, so it never burns the CPU the stalled writer needs.
+ * Concurrent evictions may reach the spill store
+ * slightly out of order. A journal used only as spill space holds partial
+ * history and is not a full log for {@link StockRecovery}.
+ */
+public class AuditTrail implements AuditStore {
+
+    private static final int FIRST_CHUNK_BITS = 3;
+    private static final int MAX_CHUNKS = 40;
+    private static final int LAP_SLACK = 16;
+    private static final int SPINS = 64;
+    private static final int YIELDS = 128;
+    private static final long PARK_NANOS = 20_000L;
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /** One run of slots; {@code stamps[i]} is the sequence + 1 of the event in slot i, 0 while being written. */
+    private static final class Chunk {
+        final byte[] ops;
+        final long[] times;
+        final int[] deltas;
+        final int[] onHands;
+        final int[] reserveds;
+        final long[] stamps;
+        final AtomicReference<String[]> notes = new AtomicReference<>(); // lazily allocated
+
+        Chunk(int cap) {
+            ops = new byte[cap];
+            times = new long[cap];
+            deltas = new int[cap];
+            onHands = new int[cap];
+            reserveds = new int[cap];
+            stamps = new long[cap];
+        }
+    }
+
+    private final int retain; // ring slots: the requested retain plus LAP_SLACK
+    private final AuditStore spill; // may be null: evicted events are dropped
+    private final Chunk ring; // bounded trails only
+    private final AtomicReferenceArray<Chunk> chunks; // unbounded trails only
+    private final AtomicLong next = new AtomicLong();
+
+    /** Unbounded trail. */
+    public AuditTrail() {
+        this.retain = Integer.MAX_VALUE;
+        this.spill = null;
+        this.ring = null;
+        this.chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    }
+
+    /**
+     * Trail that keeps the newest {@code retain} events (plus up to
+     * {@value #LAP_SLACK} more) in memory, spilling older ones to {@code spill}
+     * (or discarding them when {@code spill} is null).
+     */
+    public AuditTrail(int retain, AuditStore spill) {
+        if (retain <= 0)
+            throw new IllegalArgumentException("retain must be > 0");
+        this.retain = (int) Math.min(Integer.MAX_VALUE, (long) retain + LAP_SLACK);
+        this.spill = spill;
+        this.ring = new Chunk(this.retain);
+        this.chunks = null;
+    }
+
+    @Override
+    public void append(Op op, long epochNanos, int delta, int onHand, int reserved, String note) {
+        long seq = next.getAndIncrement();
+        RuntimeException spillFailure = null;
+        Chunk c;
+        int i;
+        if (ring != null) {
+            c = ring;
+            i = (int) (seq % retain);
+            if (seq >= retain) {
+                long previous = seq - retain + 1;
+                for (int spins = 0; (long) STAMPS.getAcquire(c.stamps, i) != previous; spins++)
+                    backOff(spins);
+                STAMPS.setVolatile(c.stamps, i, 0L); // readers must not trust the slot while it is rewritten
+                try {
+                    evict(c, i);
+                } catch (RuntimeException e) {
+                    spillFailure = e; // still publish this slot, or the next lap would wait forever
+                }
+            }
+        } else {
+            long b = seq + (1L << FIRST_CHUNK_BITS);
+            int bits = 63 - Long.numberOfLeadingZeros(b);
+            c = chunk(bits - FIRST_CHUNK_BITS, 1 << bits);
+            i = (int) (b - (1L << bits));
+        }
+        c.ops[i] = (byte) op.ordinal();
+        c.times[i] = epochNanos;
+        c.deltas[i] = delta;
+        c.onHands[i] = onHand;
+        c.reserveds[i] = reserved;
+        String[] n = c.notes.get();
+        if (note != null && n == null) {
+            c.notes.compareAndSet(null, new String[c.ops.length]);
+            n = c.notes.get();
+        }
+        if (n != null)
+            n[i] = note;
+        STAMPS.setRelease(c.stamps, i, seq + 1);
+        if (spillFailure != null)
+            throw spillFailure;
+    }
+
+    /** Events currently held in memory (including any still being written). */
+    @Override
+    public int size() {
+        return (int) Math.min(next.get(), retain);
+    }
+
+    /** Events pushed out of the ring since creation. */
+    public long getEvictedCount() {
+        return Math.max(0, next.get() - retain);
+    }
+
+    /** Spilled history (if any) followed by the in-memory events, oldest first. */
+    @Override
+    public List<String> render() {
+        List<String> older = spill == null ? List.of() : spill.render();
+        long end = next.get();
+        long start = Math.max(0, end - retain);
+        List<String> out = new ArrayList<>(older.size() + (int) (end - start));
+        out.addAll(older);
+        for (long seq = start; seq < end; seq++) {
+            Chunk c;
+            int i;
+            if (ring != null) {
+                c = ring;
+                i = (int) (seq % retain);
+            } else {
+                long b = seq + (1L << FIRST_CHUNK_BITS);
+                int bits = 63 - Long.numberOfLeadingZeros(b);
+                c = chunks.get(bits - FIRST_CHUNK_BITS);
+                i = (int) (b - (1L << bits));
+                if (c == null)
+                    continue; // writer has not installed the chunk yet
+            }
+            if ((long) STAMPS.getAcquire(c.stamps, i) != seq + 1)
+                continue; // still being written, or already overwritten and spilled
+            String[] n = c.notes.get();
+            Op op = Op.of(c.ops[i]);
+            long time = c.times[i];
+            int delta = c.deltas[i], onHand = c.onHands[i], reserved = c.reserveds[i];
+            String note = n == null ? null : n[i];
+            VarHandle.acquireFence();
+            if ((long) STAMPS.getVolatile(c.stamps, i) != seq + 1)
+                continue; // overwritten while we read it
+            out.add(AuditStore.format(op, time, delta, onHand, reserved, note));
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    /** Spin, then yield, then park while a lapped slot's previous writer finishes. */
+    private static void backOff(int spins) {
+        if (spins < SPINS)
+            Thread.onSpinWait();
+        else if (spins < YIELDS)
+            Thread.yield();
+        else
+            LockSupport.parkNanos(PARK_NANOS);
+    }
+
+    private void evict(Chunk c, int i) {
+        String[] n = c.notes.get();
+        if (spill != null) {
+            spill.append(Op.of(c.ops[i]), c.times[i], c.deltas[i], c.onHands[i], c.reserveds[i],
+                    n == null ? null : n[i]);
+        }
+        if (n != null)
+            n[i] = null;
+    }
+
+    /** The chunk at {@code index}, installing it if this writer is the first to need it. */
+    private Chunk chunk(int index, int cap) {
+        Chunk c = chunks.get(index);
+        if (c == null) {
+            chunks.compareAndSet(index, null, new Chunk(cap));
+            c = chunks.get(index);
+        }
+        return c;
+    }
+}
@@ -1,16 +1,29 @@
 package impl;
 
+import interfaces.AuditStore;
+import interfaces.AuditStore.Op;
 import interfaces.Auditable;
+import interfaces.ClockService;
 import interfaces.StockItem;
-import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Base implementation shared by multiple item types.
  * Demonstrates encapsulation with private fields and a protected constructor
  * intended for subclass access.
+ *
+ * On-hand and reserved quantities are packed into a single 64-bit word
+ * (high 32 bits = on-hand, low 32 bits = reserved) and updated with CAS loops,
+ * so concurrent callers never oversell and {@link #reserve(int)} is
+ * linearizable against {@link #getAvailable()} without taking locks.
+ * Audit events are stored as primitive records in an {@link AuditStore} and
+ * only turned into text when {@link #getAuditLog()} is called. An event is
+ * recorded after its CAS has committed, so a failing store (a full disk under a
+ * journal, say) cannot undo the mutation; such failures are counted and kept
+ * for {@link #getAuditFailureCount()} instead of being thrown at a caller whose
+ * operation did succeed.
  */
 public class BaseStockItem implements StockItem, Auditable {
 
@@ -18,15 +31,30 @@ public class BaseStockItem implements StockItem, Auditable {
     private final String name;
     private final String location;
     private final double baseUnitPrice;
-    private int onHand;
-    private int reserved;
-    private final List<String> audit = new ArrayList<>();
+    private final long baseUnitPricePaise;
+    private final AtomicLong state = new AtomicLong();
+    private final AuditStore audit;
+    private final ClockService clock;
+    private final AtomicLong auditFailures = new AtomicLong();
+    private volatile RuntimeException lastAuditFailure;
 
     /**
      * Protected constructor → accessible to subclasses, not to arbitrary callers.
      */
     protected BaseStockItem(String sku, String name, String location,
             double baseUnitPrice, int initialOnHand) {
+        this(sku, name, location, baseUnitPrice, initialOnHand, new AuditTrail());
+    }
+
+    /** As above, recording audit events into the given store (e.g. a journal). */
+    protected BaseStockItem(String sku, String name, String location,
+            double baseUnitPrice, int initialOnHand, AuditStore audit) {
+        this(sku, name, location, baseUnitPrice, initialOnHand, audit, CachedClock.shared());
+    }
+
+    /** Full constructor: audit store plus the clock used for timestamps and expiry. */
+    protected BaseStockItem(String sku, String name, String location,
+            double baseUnitPrice, int initialOnHand, AuditStore audit, ClockService clock) {
         if (baseUnitPrice < 0)
             throw new IllegalArgumentException("Price cannot be negative");
         if (initialOnHand < 0)
@@ -35,9 +63,11 @@ public class BaseStockItem implements StockItem, Auditable {
         this.name = name;
         this.location = location;
         this.baseUnitPrice = baseUnitPrice;
-        this.onHand = initialOnHand;
-        this.reserved = 0;
-        addAudit("INIT onHand=" + initialOnHand);
+        this.baseUnitPricePaise = Money.toPaise(baseUnitPrice);
+        this.audit = Objects.requireNonNull(audit, "audit");
+        this.clock = Objects.requireNonNull(clock, "clock");
+        this.state.set(pack(initialOnHand, 0));
+        record(Op.INIT, initialOnHand, initialOnHand, 0);
     }
 
     /** Public factory for non-specialized items. */
@@ -46,8 +76,70 @@ public class BaseStockItem implements StockItem, Auditable {
         return new BaseStockItem(sku, name, location, baseUnitPrice, initialOnHand);
     }
 
+    /** Factory for a non-specialized item whose audit goes to the given store. */
+    public static BaseStockItem of(String sku, String name, String location,
+            double baseUnitPrice, int initialOnHand, AuditStore audit) {
+        return new BaseStockItem(sku, name, location, baseUnitPrice, initialOnHand, audit);
+    }
+
+    /** Factory for a non-specialized item with an explicit audit store and clock. */
+    public static BaseStockItem of(String sku, String name, String location,
+            double baseUnitPrice, int initialOnHand, AuditStore audit, ClockService clock) {
+        return new BaseStockItem(sku, name, location, baseUnitPrice, initialOnHand, audit, clock);
+    }
+
+    /** Clock used for audit timestamps and date checks. */
+    protected ClockService clock() {
+        return clock;
+    }
+
+    /** Record a free-form audit message (allocates; prefer the op-coded overloads). */
     protected void addAudit(String message) {
-        audit.add(LocalDateTime.now() + " — " + message);
+        addAudit(Op.NOTE, 0, message);
+    }
+
+    /** Record a subclass event against the current quantities. */
+    protected void addAudit(Op op, int delta, String note) {
+        long s = state.get();
+        addAudit(op, delta, onHandOf(s), reservedOf(s), note);
+    }
+
+    /** Record a subclass event with explicit numeric fields (see {@link Op}). */
+    protected void addAudit(Op op, int delta, int onHand, int reserved, String note) {
+        try {
+            audit.append(op, clock.epochNanos(), delta, onHand, reserved, note);
+        } catch (RuntimeException e) {
+            lastAuditFailure = e; // the change being audited has already been applied
+            auditFailures.incrementAndGet();
+        }
+    }
+
+    private void record(Op op, int delta, int onHand, int reserved) {
+        addAudit(op, delta, onHand, reserved, null);
+    }
+
+    /** Audit events that could not be recorded; their mutations still took effect. */
+    public long getAuditFailureCount() {
+        return auditFailures.get();
+    }
+
+    /** The most recent audit store failure, or null if none occurred. */
+    public RuntimeException getLastAuditFailure() {
+        return lastAuditFailure;
+    }
+
+    // —— packed state helpers ——
+
+    private static long pack(int onHand, int reserved) {
+        return ((long) onHand << 32) | (reserved & 0xFFFF_FFFFL);
+    }
+
+    private static int onHandOf(long s) {
+        return (int) (s >>> 32);
+    }
+
+    private static int reservedOf(long s) {
+        return (int) s;
     }
 
     // —— StockItem ——
@@ -72,58 +164,126 @@ public class BaseStockItem implements StockItem, Auditable {
         return baseUnitPrice;
     }
 
+    @Override
+    public long getBaseUnitPricePaise() {
+        return baseUnitPricePaise;
+    }
+
     @Override
     public int getQuantityOnHand() {
-        return onHand;
+        return onHandOf(state.get());
     }
 
     @Override
     public int getQuantityReserved() {
-        return reserved;
+        return reservedOf(state.get());
+    }
+
+    /** Reads both counters from one snapshot so the result is never torn. */
+    @Override
+    public int getAvailable() {
+        long s = state.get();
+        return Math.max(0, onHandOf(s) - reservedOf(s));
     }
 
     @Override
     public void restock(int amount) {
+        receive(amount, Op.RESTOCK, null);
+    }
+
+    /**
+     * Add stock recorded under a subclass op instead of RESTOCK (e.g. one
+     * aggregated record for a bulk receipt). The op must replay as a restock.
+     */
+    protected void receive(int amount, Op op, String note) {
         if (amount <= 0)
             throw new IllegalArgumentException("Restock amount must be > 0");
-        onHand += amount;
-        addAudit("RESTOCK +" + amount + ", onHand=" + onHand);
+        while (true) {
+            long s = state.get();
+            int onHand = onHandOf(s);
+            if (onHand > Integer.MAX_VALUE - amount)
+                throw new IllegalArgumentException("Restock would overflow on-hand quantity");
+            if (state.compareAndSet(s, pack(onHand + amount, reservedOf(s)))) {
+                addAudit(op, amount, onHand + amount, reservedOf(s), note);
+                return;
+            }
+            Thread.onSpinWait();
+        }
     }
 
     @Override
     public boolean reserve(int amount) {
         if (amount <= 0)
             return false;
-        if (amount > getAvailable())
-            return false;
-        reserved += amount;
-        addAudit("RESERVE " + amount + ", reserved=" + reserved + ", available=" + getAvailable());
-        return true;
+        while (true) {
+            long s = state.get();
+            int onHand = onHandOf(s);
+            int reserved = reservedOf(s);
+            if (amount > onHand - reserved)
+                return false;
+            if (state.compareAndSet(s, pack(onHand, reserved + amount))) {
+                record(Op.RESERVE, amount, onHand, reserved + amount);
+                return true;
+            }
+            Thread.onSpinWait();
+        }
     }
 
     @Override
     public void release(int amount) {
         if (amount <= 0)
             return;
-        int delta = Math.min(amount, reserved);
-        reserved -= delta;
-        addAudit("RELEASE " + delta + ", reserved=" + reserved);
+        while (true) {
+            long s = state.get();
+            int reserved = reservedOf(s);
+            int delta = Math.min(amount, reserved);
+            if (state.compareAndSet(s, pack(onHandOf(s), reserved - delta))) {
+                record(Op.RELEASE, delta, onHandOf(s), reserved - delta);
+                return;
+            }
+            Thread.onSpinWait();
+        }
     }
 
     @Override
     public boolean shipReserved(int amount) {
-        if (amount <= 0 || amount > reserved)
-            return false;
-        reserved -= amount;
-        onHand -= amount;
-        addAudit("SHIP " + amount + ", onHand=" + onHand + ", reserved=" + reserved);
-        return true;
+        while (true) {
+            long s = state.get();
+            int onHand = onHandOf(s);
+            int reserved = reservedOf(s);
+            if (amount <= 0 || amount > reserved)
+                return false;
+            if (state.compareAndSet(s, pack(onHand - amount, reserved - amount))) {
+                record(Op.SHIP, amount, onHand - amount, reserved - amount);
+                return true;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Remove unreserved units from stock without shipping them (expired or
+     * damaged goods). Returns false if fewer than {@code amount} are available.
+     */
+    protected boolean writeOff(int amount) {
+        while (true) {
+            long s = state.get();
+            int onHand = onHandOf(s);
+            int reserved = reservedOf(s);
+            if (amount <= 0 || amount > onHand - reserved)
+                return false;
+            if (state.compareAndSet(s, pack(onHand - amount, reserved))) {
+                record(Op.WRITE_OFF, amount, onHand - amount, reserved);
+                return true;
+            }
+            Thread.onSpinWait();
+        }
     }
 
     // —— Auditable ——
 
     @Override
     public List<String> getAuditLog() {
-        return Collections.unmodifiableList(audit);
+        return audit.render();
     }
 }
\ No newline at end of file
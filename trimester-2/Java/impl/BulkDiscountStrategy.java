@@ -2,20 +2,30 @@ package impl;
 
 import interfaces.PricingStrategy;
 import interfaces.StockItem;
+import java.math.RoundingMode;
 
 /** Bulk discount when quantity meets/exceeds threshold. */
 public class BulkDiscountStrategy implements PricingStrategy {
 
     private final int threshold;
     private final double discount; // e.g., 0.1 = 10%
+    private final int discountBp;
+    private final RoundingMode rounding;
 
     public BulkDiscountStrategy(int threshold, double discount) {
+        this(threshold, discount, RoundingMode.HALF_UP);
+    }
+
+    /** Bulk discount whose fixed-point price is rounded with {@code rounding}. */
+    public BulkDiscountStrategy(int threshold, double discount, RoundingMode rounding) {
         if (threshold <= 0)
             throw new IllegalArgumentException("threshold must be > 0");
         if (discount < 0 || discount >= 1)
             throw new IllegalArgumentException("discount must be in [0,1)");
         this.threshold = threshold;
         this.discount = discount;
+        this.discountBp = Money.toBasisPoints(discount);
+        this.rounding = rounding;
     }
 
     @Override
@@ -28,6 +38,34 @@ public class BulkDiscountStrategy implements PricingStrategy {
         return base;
     }
 
+    @Override
+    public long pricePaise(StockItem item, int units) {
+        if (units <= 0)
+            return 0L;
+        long base = Money.times(item.getBaseUnitPricePaise(), units);
+        return units >= threshold ? Money.discount(base, discountBp, rounding) : base;
+    }
+
+    @Override
+    public long adjustPaise(StockItem item, int units, long amountPaise) {
+        return units >= threshold ? Money.discount(amountPaise, discountBp, rounding) : amountPaise;
+    }
+
+    @Override
+    public void priceAll(StockItem[] items, int[] units, double[] out) {
+        PricingStrategy.checkCart(items, units, out);
+        double factor = 1.0 - discount;
+        for (int i = 0; i < items.length; i++) {
+            int u = units[i];
+            if (u <= 0) {
+                out[i] = 0.0;
+                continue;
+            }
+            double base = items[i].getBaseUnitPrice() * u;
+            out[i] = u >= threshold ? base * factor : base;
+        }
+    }
+
     @Override
     public String name() {
         return String.format("Bulk %d+ @ -%.0f%%", threshold, discount * 100);
@@ -0,0 +1,76 @@
+package impl;
+
+import interfaces.ClockService;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coarse clock refreshed by a background daemon thread.
+ * Readers only load volatile fields; the time zone rules are consulted once a
+ * day, when the cached date flips at local midnight.
+ */
+public class CachedClock implements ClockService, AutoCloseable {
+
+    private static final class Holder {
+        static final CachedClock SHARED = new CachedClock(ZoneId.systemDefault(), 1);
+    }
+
+    private final ZoneId zone;
+    private final ScheduledExecutorService ticker;
+    private volatile long millis;
+    private volatile LocalDate today;
+    private long nextMidnightMillis;
+
+    /** Clock ticking every {@code tickMillis} milliseconds in the given zone. */
+    public CachedClock(ZoneId zone, long tickMillis) {
+        if (tickMillis <= 0)
+            throw new IllegalArgumentException("tickMillis must be > 0");
+        this.zone = zone;
+        rollDate(System.currentTimeMillis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "cached-clock");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Process-wide clock (1 ms resolution, system zone) used as the default. */
+    public static CachedClock shared() {
+        return Holder.SHARED;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return millis;
+    }
+
+    @Override
+    public LocalDate today() {
+        return today;
+    }
+
+    /** Stop the background ticker; the clock then stays frozen. */
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    private void tick() {
+        long now = System.currentTimeMillis();
+        if (now >= nextMidnightMillis)
+            rollDate(now);
+        millis = now;
+    }
+
+    private void rollDate(long now) {
+        LocalDate date = LocalDate.ofInstant(Instant.ofEpochMilli(now), zone);
+        nextMidnightMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        today = date;
+        millis = now;
+    }
+}
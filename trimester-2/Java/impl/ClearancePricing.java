@@ -1,41 +1,119 @@
 package impl;
 
+import interfaces.ClockService;
 import interfaces.PricingStrategy;
 import interfaces.StockItem;
-import java.time.LocalDate;
+import java.math.RoundingMode;
 
 /**
- * Clearance pricing: if a PerishableItem is near expiry, apply a markdown.
+ * Clearance pricing: units drawn (FEFO) from PerishableItem lots that are near
+ * expiry get a markdown; other units pay full price.
  * For non-perishables, behaves like flat pricing.
  */
 public class ClearancePricing implements PricingStrategy {
 
     private final int daysWindow;
     private final double markdown; // e.g., 0.3 = 30% off
+    private final int markdownBp;
+    private final RoundingMode rounding;
+    private final ClockService clock;
 
     public ClearancePricing(int daysWindow, double markdown) {
+        this(daysWindow, markdown, CachedClock.shared());
+    }
+
+    /** Clearance pricing that reads "today" from the given clock. */
+    public ClearancePricing(int daysWindow, double markdown, ClockService clock) {
+        this(daysWindow, markdown, clock, RoundingMode.HALF_UP);
+    }
+
+    /** As above, rounding fixed-point markdowns with {@code rounding}. */
+    public ClearancePricing(int daysWindow, double markdown, ClockService clock, RoundingMode rounding) {
         if (daysWindow <= 0)
             throw new IllegalArgumentException("daysWindow must be > 0");
         if (markdown < 0 || markdown >= 1)
             throw new IllegalArgumentException("markdown must be in [0,1)");
         this.daysWindow = daysWindow;
         this.markdown = markdown;
+        this.markdownBp = Money.toBasisPoints(markdown);
+        this.rounding = rounding;
+        this.clock = clock;
     }
 
+    /** Units drawn from near-expiry lots are marked down; the rest pay full price. */
     @Override
     public double price(StockItem item, int units) {
         if (units <= 0)
             return 0.0;
-        double base = item.getBaseUnitPrice() * units;
-        // If the item is perishable and near expiry, apply markdown.
-        if (item instanceof PerishableItem p) {
-            LocalDate today = LocalDate.now();
-            if (!p.getExpiryDate().isBefore(today) &&
-                    !p.getExpiryDate().isAfter(today.plusDays(daysWindow))) {
-                base *= (1.0 - markdown);
-            }
+        return markdown(item.getBaseUnitPrice(), units,
+                markdownUnits(item, units, clock.today().toEpochDay()), 1.0 - markdown);
+    }
+
+    @Override
+    public long pricePaise(StockItem item, int units) {
+        if (units <= 0)
+            return 0L;
+        long base = Money.times(item.getBaseUnitPricePaise(), units);
+        return markdownPaise(base, units, markdownUnits(item, units, clock.today().toEpochDay()));
+    }
+
+    @Override
+    public long adjustPaise(StockItem item, int units, long amountPaise) {
+        if (units <= 0)
+            return amountPaise;
+        return markdownPaise(amountPaise, units, markdownUnits(item, units, clock.today().toEpochDay()));
+    }
+
+    /** Fixed-point cart pricing; reads the clock once for the whole cart. */
+    @Override
+    public void pricePaiseAll(StockItem[] items, int[] units, long[] out) {
+        PricingStrategy.checkCart(items, units, out.length);
+        long today = clock.today().toEpochDay();
+        for (int i = 0; i < items.length; i++) {
+            int u = units[i];
+            out[i] = u <= 0 ? 0L
+                    : markdownPaise(Money.times(items[i].getBaseUnitPricePaise(), u), u,
+                            markdownUnits(items[i], u, today));
+        }
+    }
+
+    /** Cart pricing reads the clock once for the whole cart. */
+    @Override
+    public void priceAll(StockItem[] items, int[] units, double[] out) {
+        PricingStrategy.checkCart(items, units, out);
+        long today = clock.today().toEpochDay();
+        double factor = 1.0 - markdown;
+        for (int i = 0; i < items.length; i++) {
+            int u = units[i];
+            out[i] = u <= 0 ? 0.0
+                    : markdown(items[i].getBaseUnitPrice(), u, markdownUnits(items[i], u, today), factor);
         }
-        return base;
+    }
+
+    /** Units of the order that come from lots inside the clearance window (FEFO). */
+    private int markdownUnits(StockItem item, int units, long todayEpochDay) {
+        if (item instanceof PerishableItem p)
+            return p.unitsExpiringWithin(units, todayEpochDay, daysWindow);
+        return 0;
+    }
+
+    private static double markdown(double unitPrice, int units, int marked, double factor) {
+        double full = unitPrice * units;
+        if (marked == 0)
+            return full;
+        if (marked == units)
+            return full * factor;
+        return unitPrice * (units - marked) + unitPrice * marked * factor;
+    }
+
+    /** Mark down the share of {@code amount} belonging to {@code marked} of {@code units}. */
+    private long markdownPaise(long amount, int units, int marked) {
+        if (marked == 0)
+            return amount;
+        if (marked == units)
+            return Money.discount(amount, markdownBp, rounding);
+        long share = Money.divide(Math.multiplyExact(amount, (long) marked), units, rounding);
+        return amount - share + Money.discount(share, markdownBp, rounding);
     }
 
     @Override
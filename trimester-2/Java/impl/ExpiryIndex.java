@@ -0,0 +1,122 @@
+package impl;
+
+import interfaces.ClockService;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Perishable items bucketed by expiry day in a sorted map, so range queries
+ * touch only the buckets in range and cost time proportional to the result.
+ *
+ * Both queries follow {@link PerishableItem#reserve}: stock expiring today can
+ * no longer be reserved, so "expired" means expiry on or before today and
+ * "expiring within N days" — {@link ClearancePricing}'s window — means
+ * today < expiry ≤ today+N.
+ * Updates are serialized on the index; queries read the concurrent map lock-free.
+ */
+public class ExpiryIndex {
+
+    private final ConcurrentSkipListMap<Long, Set<PerishableItem>> byDay = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final ClockService clock;
+
+    public ExpiryIndex() {
+        this(CachedClock.shared());
+    }
+
+    public ExpiryIndex(ClockService clock) {
+        this.clock = clock;
+    }
+
+    /** Index an item under its current expiry date. */
+    public synchronized void add(PerishableItem item) {
+        if (bucket(item.getExpiryDate().toEpochDay()).add(item))
+            size.incrementAndGet();
+    }
+
+    /** Index an item and keep it up to date as its earliest lot changes. */
+    public void track(PerishableItem item) {
+        add(item);
+        item.addExpiryListener(this::update);
+    }
+
+    /** Move an item from {@code previous} to its current date, indexing it if absent. */
+    public synchronized void upsert(PerishableItem item, LocalDate previous) {
+        removeFrom(previous.toEpochDay(), item);
+        add(item);
+    }
+
+    /** Remove an item indexed under its current expiry date. */
+    public synchronized boolean remove(PerishableItem item) {
+        return removeFrom(item.getExpiryDate().toEpochDay(), item);
+    }
+
+    /** Move an item whose expiry changed from {@code previous} to its current date. */
+    public synchronized void update(PerishableItem item, LocalDate previous) {
+        if (removeFrom(previous.toEpochDay(), item))
+            add(item);
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /** Items whose expiry lies in (today, today + days]. */
+    public List<PerishableItem> expiringWithin(int days) {
+        List<PerishableItem> out = new ArrayList<>();
+        forEachExpiringWithin(days, out::add);
+        return out;
+    }
+
+    /** Visit items whose expiry lies in (today, today + days] without building a list. */
+    public void forEachExpiringWithin(int days, Consumer<PerishableItem> action) {
+        if (days < 0)
+            throw new IllegalArgumentException("days must be >= 0");
+        long today = clock.today().toEpochDay();
+        visit(byDay.subMap(today, false, today + days, true), action);
+    }
+
+    /** Items whose expiry is today or earlier. */
+    public List<PerishableItem> expired() {
+        List<PerishableItem> out = new ArrayList<>();
+        forEachExpired(out::add);
+        return out;
+    }
+
+    public void forEachExpired(Consumer<PerishableItem> action) {
+        visit(byDay.headMap(clock.today().toEpochDay(), true), action);
+    }
+
+    /** Earliest indexed expiry date, or null when empty. */
+    public LocalDate earliestExpiry() {
+        Map.Entry<Long, Set<PerishableItem>> first = byDay.firstEntry();
+        return first == null ? null : LocalDate.ofEpochDay(first.getKey());
+    }
+
+    private static void visit(NavigableMap<Long, Set<PerishableItem>> range, Consumer<PerishableItem> action) {
+        for (Set<PerishableItem> items : range.values())
+            items.forEach(action);
+    }
+
+    private Set<PerishableItem> bucket(long day) {
+        return byDay.computeIfAbsent(day, d -> ConcurrentHashMap.newKeySet());
+    }
+
+    private boolean removeFrom(long day, PerishableItem item) {
+        Set<PerishableItem> items = byDay.get(day);
+        if (items == null || !items.remove(item))
+            return false;
+        size.decrementAndGet();
+        if (items.isEmpty())
+            byDay.remove(day);
+        return true;
+    }
+}
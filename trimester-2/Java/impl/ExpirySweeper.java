@@ -0,0 +1,107 @@
+package impl;
+
+import interfaces.ClockService;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes off expired perishable stock once per day.
+ *
+ * The sweeper keeps its own {@link ExpiryIndex} of tracked items, so a sweep
+ * only visits items whose earliest lot has already expired instead of scanning
+ * the catalog. Each write-off is audited on the item and reported to listeners
+ * as a valuation delta, so aggregates can be adjusted incrementally.
+ */
+public class ExpirySweeper {
+
+    /** Receives each write-off; {@code valuePaise} is units × base unit price. */
+    @FunctionalInterface
+    public interface WriteOffListener {
+        void writtenOff(PerishableItem item, int units, long valuePaise);
+    }
+
+    private final ClockService clock;
+    private final ExpiryIndex index;
+    private final List<WriteOffListener> listeners = new CopyOnWriteArrayList<>();
+    private long lastSweptDay = Long.MIN_VALUE;
+    private long writtenOffUnits;
+    private long writtenOffValuePaise;
+
+    public ExpirySweeper() {
+        this(CachedClock.shared());
+    }
+
+    public ExpirySweeper(ClockService clock) {
+        this.clock = clock;
+        this.index = new ExpiryIndex(clock);
+    }
+
+    /** Start watching an item; it is re-keyed automatically as its lots change. */
+    public void track(PerishableItem item) {
+        index.add(item);
+        item.addExpiryListener(index::upsert);
+    }
+
+    public void addListener(WriteOffListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Check for a day rollover every {@code period} on the caller's scheduler and
+     * sweep once per new day.
+     */
+    public ScheduledFuture<?> schedule(ScheduledExecutorService scheduler, Duration period) {
+        long millis = period.toMillis();
+        return scheduler.scheduleWithFixedDelay(this::sweepIfNewDay, 0, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /** Sweep if the clock has moved to a day not yet swept; returns units written off. */
+    public synchronized int sweepIfNewDay() {
+        return clock.today().toEpochDay() == lastSweptDay ? 0 : sweep();
+    }
+
+    /** Write off all expired lots now; returns the number of units written off. */
+    public synchronized int sweep() {
+        LocalDate today = clock.today();
+        lastSweptDay = today.toEpochDay();
+        List<PerishableItem> expired = new ArrayList<>();
+        index.forEachExpired(expired::add);
+        int total = 0;
+        for (PerishableItem item : expired) {
+            int units;
+            synchronized (item) { // addLot re-keys under this monitor, so check and removal see the same lots
+                units = item.writeOffExpired(today);
+                if (item.getLots().isEmpty())
+                    index.remove(item); // nothing left to expire until new stock arrives
+            }
+            if (units == 0)
+                continue;
+            long value = Money.times(item.getBaseUnitPricePaise(), units);
+            total += units;
+            writtenOffUnits += units;
+            writtenOffValuePaise += value;
+            for (WriteOffListener l : listeners)
+                l.writtenOff(item, units, value);
+        }
+        return total;
+    }
+
+    /** Items currently tracked. */
+    public int size() {
+        return index.size();
+    }
+
+    public synchronized long getWrittenOffUnits() {
+        return writtenOffUnits;
+    }
+
+    public synchronized long getWrittenOffValuePaise() {
+        return writtenOffValuePaise;
+    }
+}
@@ -13,6 +13,28 @@ public class FlatRatePricing implements PricingStrategy {
         return item.getBaseUnitPrice() * units;
     }
 
+    @Override
+    public long pricePaise(StockItem item, int units) {
+        if (units <= 0)
+            return 0L;
+        return Money.times(item.getBaseUnitPricePaise(), units);
+    }
+
+    /** Flat pricing adds nothing on top of earlier stages. */
+    @Override
+    public long adjustPaise(StockItem item, int units, long amountPaise) {
+        return amountPaise;
+    }
+
+    @Override
+    public void priceAll(StockItem[] items, int[] units, double[] out) {
+        PricingStrategy.checkCart(items, units, out);
+        for (int i = 0; i < items.length; i++) {
+            int u = units[i];
+            out[i] = u <= 0 ? 0.0 : items[i].getBaseUnitPrice() * u;
+        }
+    }
+
     @Override
     public String name() {
         return "Flat Rate";
@@ -0,0 +1,46 @@
+package impl;
+
+import interfaces.PricingStrategy;
+import interfaces.StockItem;
+import java.math.RoundingMode;
+
+/** Adds GST on top of the price; usually the last stage of a pipeline. */
+public class GstPricing implements PricingStrategy {
+
+    private final int rateBp;
+    private final RoundingMode rounding;
+
+    /** GST at {@code rate} (e.g., 0.18 = 18%), rounded half-up. */
+    public GstPricing(double rate) {
+        this(rate, RoundingMode.HALF_UP);
+    }
+
+    public GstPricing(double rate, RoundingMode rounding) {
+        if (rate < 0 || rate > 1)
+            throw new IllegalArgumentException("rate must be in [0,1]");
+        this.rateBp = Money.toBasisPoints(rate);
+        this.rounding = rounding;
+    }
+
+    @Override
+    public double price(StockItem item, int units) {
+        return Money.toRupees(pricePaise(item, units));
+    }
+
+    @Override
+    public long pricePaise(StockItem item, int units) {
+        if (units <= 0)
+            return 0L;
+        return adjustPaise(item, units, Money.times(item.getBaseUnitPricePaise(), units));
+    }
+
+    @Override
+    public long adjustPaise(StockItem item, int units, long amountPaise) {
+        return Money.addTax(amountPaise, rateBp, rounding);
+    }
+
+    @Override
+    public String name() {
+        return String.format("GST %.2f%%", rateBp / 100.0);
+    }
+}
@@ -0,0 +1,46 @@
+package impl;
+
+import interfaces.ClockService;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/** Clock that only moves when told to; makes time-dependent behaviour deterministic. */
+public class ManualClock implements ClockService {
+
+    private final ZoneId zone;
+    private volatile long millis;
+
+    public ManualClock(long epochMillis, ZoneId zone) {
+        this.millis = epochMillis;
+        this.zone = zone;
+    }
+
+    /** Clock starting at local midnight of {@code date}. */
+    public static ManualClock at(LocalDate date) {
+        ZoneId zone = ZoneId.systemDefault();
+        return new ManualClock(date.atStartOfDay(zone).toInstant().toEpochMilli(), zone);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return millis;
+    }
+
+    @Override
+    public LocalDate today() {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(millis), zone);
+    }
+
+    public void setTimeMillis(long epochMillis) {
+        this.millis = epochMillis;
+    }
+
+    public void advanceMillis(long delta) {
+        this.millis += delta;
+    }
+
+    public void advanceDays(int days) {
+        advanceMillis(days * 86_400_000L);
+    }
+}
@@ -0,0 +1,466 @@
+package impl;
+
+import interfaces.AuditStore;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Persistent, append-only audit journal shared by many items.
+ * Records are fixed-size (64 bytes) and written straight into memory-mapped
+ * segment files, so an append is a CAS on the tail plus a few stores — no
+ * per-record syscall. A new segment is mapped whenever the current one is full.
+ *
+ * Record layout (big-endian):
+ * [0] itemId+1 (int, written last with release semantics; 0 = empty slot)
+ * [4] op (byte) [5] note length (byte) [8] epoch-nanos (long)
+ * [16] delta [20] onHand [24] reserved (ints)
+ * [28] record number of the item's previous event (int; -1 = none)
+ * [32..63] note (UTF-8, truncated)
+ *
+ * Each item is registered once with a DEFINE record carrying its SKU, so the
+ * journal can be reopened after a restart and read back per item. An item's
+ * events form a backward chain through the previous-event field, so reading one
+ * item's history touches only its own records; the chain head is kept in memory
+ * and rebuilt on open. Chains address the first 2^31 records of a journal.
+ *
+ * Readers may race a writer that has claimed a slot in a segment it has not
+ * mapped yet; slots beyond the mapped segments are treated as unpublished.
+ *
+ * Record numbers are derived from the segment size, so the size is stored in a
+ * small {@code journal.meta} file (magic, record size, segment bytes) next to
+ * the segments, and reopening with a different size is rejected. Journals
+ * written before the meta file existed are checked against the size of their
+ * first segment instead, and get a meta file on open.
+ */
+public class MappedAuditJournal implements Closeable {
+
+    public static final int RECORD_SIZE = 64;
+    private static final int PREV_OFFSET = 28;
+    private static final int NOTE_OFFSET = 32;
+    private static final int NONE = -1;
+    private static final long CHAIN_WAIT_NANOS = 10_000_000L;
+    private static final int NOTE_CAPACITY = RECORD_SIZE - NOTE_OFFSET;
+    private static final byte DEFINE = (byte) 0xFF;
+    private static final int META_MAGIC = 0x4A524E4C; // "JRNL"
+    private static final String META_FILE = "journal.meta";
+    private static final VarHandle HEADER =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    /** Callback for sequential scans over the journal. */
+    @FunctionalInterface
+    public interface RecordVisitor {
+        void visit(int itemId, AuditStore.Op op, long epochNanos, int delta, int onHand, int reserved);
+    }
+
+    private final Path dir;
+    private final int segmentBytes;
+    private final AtomicLong tail = new AtomicLong();
+    private final long recoveredLength; // slots below this that are empty on open stay empty
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    private final ConcurrentHashMap<String, Integer> idsBySku = new ConcurrentHashMap<>();
+    private final List<String> skusById = Collections.synchronizedList(new ArrayList<>());
+    private final ConcurrentHashMap<Integer, Chain> chains = new ConcurrentHashMap<>();
+
+    /** Per-item event count and the record number of its newest event. */
+    private static final class Chain {
+        final AtomicInteger count = new AtomicInteger();
+        final AtomicLong head = new AtomicLong(NONE);
+        volatile boolean broken; // chain could not be rebuilt; render by scanning
+    }
+
+    /**
+     * Open (or create) a journal in {@code dir}. Existing segments are scanned to
+     * restore the SKU dictionary and the append position.
+     *
+     * @throws IllegalArgumentException if the journal in {@code dir} was written
+     *         with a different segment size
+     */
+    public MappedAuditJournal(Path dir, int segmentBytes) {
+        if (segmentBytes < RECORD_SIZE)
+            throw new IllegalArgumentException("segmentBytes must hold at least one record");
+        this.dir = dir;
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_SIZE;
+        try {
+            Files.createDirectories(dir);
+            int n = 0;
+            while (Files.exists(segmentPath(n)))
+                n++;
+            checkMeta(n > 0); // before mapping: map() would resize a mismatched segment
+            for (int i = 0; i < n; i++)
+                segment(i);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open audit journal in " + dir, e);
+        }
+        recoveredLength = recover();
+    }
+
+    /** Audit store view for one item; registers the SKU on first use. */
+    public AuditStore storeFor(String sku) {
+        return new ItemStore(idFor(sku));
+    }
+
+    /** SKU registered under the given item id. */
+    public String skuOf(int itemId) {
+        return skusById.get(itemId);
+    }
+
+    /** Number of SKUs registered in this journal. */
+    public int itemCount() {
+        return skusById.size();
+    }
+
+    /** Bytes appended so far (including any unwritten slots). */
+    public long length() {
+        return tail.get();
+    }
+
+    /** Number of mapped segment files. */
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    public int getSegmentBytes() {
+        return segmentBytes;
+    }
+
+    public Path getDirectory() {
+        return dir;
+    }
+
+    /** Visit every item event in append order. */
+    public void forEach(RecordVisitor visitor) {
+        forEach(0, tail.get(), visitor);
+    }
+
+    /** Visit item events whose byte position lies in [from, to). */
+    public void forEach(long from, long to, RecordVisitor visitor) {
+        for (long pos = from; pos < to; pos += RECORD_SIZE) {
+            MappedByteBuffer seg = mapped(pos);
+            if (seg == null)
+                break; // the rest lies in segments no writer has mapped yet
+            int off = (int) (pos % segmentBytes);
+            int header = (int) HEADER.getAcquire(seg, off);
+            if (header == 0 || seg.get(off + 4) == DEFINE)
+                continue;
+            visitor.visit(header - 1, AuditStore.Op.of(seg.get(off + 4)), seg.getLong(off + 8),
+                    seg.getInt(off + 16), seg.getInt(off + 20), seg.getInt(off + 24));
+        }
+    }
+
+    /**
+     * Wait (up to {@code timeoutNanos}) until every slot in [from, to) has been
+     * published by its writer; see {@link #publishedUpTo}. Returns true if no
+     * slot remained unpublished.
+     */
+    public boolean awaitPublished(long from, long to, long timeoutNanos) {
+        return publishedUpTo(from, to, timeoutNanos) == to;
+    }
+
+    /**
+     * First position in [from, to) whose slot is still unpublished after waiting
+     * up to {@code timeoutNanos}, or {@code to} if all are published. Empty slots
+     * found on open belong to writers of a previous run and are skipped, since
+     * nothing can fill them any more.
+     */
+    public long publishedUpTo(long from, long to, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (long pos = Math.max(from, recoveredLength); pos < to; pos += RECORD_SIZE) {
+            if (!awaitSlot(pos, deadline))
+                return pos;
+        }
+        return to;
+    }
+
+    /** Flush mapped pages to disk. */
+    public void force() {
+        for (MappedByteBuffer seg : segments)
+            seg.force();
+    }
+
+    @Override
+    public void close() {
+        force();
+    }
+
+    // —— internals ——
+
+    private int idFor(String sku) {
+        Integer existing = idsBySku.get(sku);
+        if (existing != null)
+            return existing;
+        synchronized (skusById) {
+            existing = idsBySku.get(sku);
+            if (existing != null)
+                return existing;
+            int id = skusById.size();
+            byte[] bytes = sku.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > NOTE_CAPACITY)
+                throw new IllegalArgumentException("SKU too long for journal: " + sku);
+            write(id, DEFINE, 0L, 0, 0, 0, bytes);
+            skusById.add(sku);
+            chains.put(id, new Chain());
+            idsBySku.put(sku, id);
+            return id;
+        }
+    }
+
+    private void write(int itemId, byte op, long nanos, int delta, int onHand, int reserved, byte[] note) {
+        long pos = tail.getAndAdd(RECORD_SIZE);
+        MappedByteBuffer seg = segment((int) (pos / segmentBytes));
+        int off = (int) (pos % segmentBytes);
+        long prev = op == DEFINE ? NONE : chains.get(itemId).head.getAndSet(pos / RECORD_SIZE);
+        seg.putInt(off + PREV_OFFSET, (int) prev);
+        seg.put(off + 4, op);
+        seg.putLong(off + 8, nanos);
+        seg.putInt(off + 16, delta);
+        seg.putInt(off + 20, onHand);
+        seg.putInt(off + 24, reserved);
+        int len = 0;
+        if (note != null) {
+            len = Math.min(note.length, NOTE_CAPACITY);
+            seg.put(off + NOTE_OFFSET, note, 0, len);
+        }
+        seg.put(off + 5, (byte) len);
+        HEADER.setRelease(seg, off, itemId + 1);
+    }
+
+    private MappedByteBuffer segment(int index) {
+        MappedByteBuffer[] segs = segments;
+        if (index < segs.length)
+            return segs[index];
+        synchronized (this) {
+            segs = segments;
+            if (index < segs.length)
+                return segs[index];
+            MappedByteBuffer[] grown = Arrays.copyOf(segs, index + 1);
+            for (int i = segs.length; i <= index; i++)
+                grown[i] = map(i);
+            segments = grown;
+            return grown[index];
+        }
+    }
+
+    /** Segment holding {@code pos}, or null if no writer has mapped it yet. */
+    private MappedByteBuffer mapped(long pos) {
+        MappedByteBuffer[] segs = segments;
+        long index = pos / segmentBytes;
+        return index < segs.length ? segs[(int) index] : null;
+    }
+
+    /** Spin until the slot at {@code pos} is published; false at the deadline. */
+    private boolean awaitSlot(long pos, long deadline) {
+        int off = (int) (pos % segmentBytes);
+        while (true) {
+            MappedByteBuffer seg = mapped(pos);
+            if (seg != null && (int) HEADER.getAcquire(seg, off) != 0)
+                return true;
+            if (System.nanoTime() >= deadline)
+                return false;
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Verify the stored segment size against ours, writing the meta file if it is missing. */
+    private void checkMeta(boolean hasSegments) throws IOException {
+        Path meta = dir.resolve(META_FILE);
+        if (Files.exists(meta)) {
+            ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(meta));
+            if (in.remaining() < 12 || in.getInt() != META_MAGIC || in.getInt() != RECORD_SIZE)
+                throw new IllegalStateException("Not an audit journal: " + meta);
+            int stored = in.getInt();
+            if (stored != segmentBytes)
+                throw new IllegalArgumentException("Journal in " + dir + " uses " + stored
+                        + "-byte segments, not " + segmentBytes);
+            return;
+        }
+        if (hasSegments && Files.size(segmentPath(0)) != segmentBytes)
+            throw new IllegalArgumentException("Journal in " + dir + " uses " + Files.size(segmentPath(0))
+                    + "-byte segments, not " + segmentBytes);
+        ByteBuffer out = ByteBuffer.allocate(12).putInt(META_MAGIC).putInt(RECORD_SIZE).putInt(segmentBytes);
+        Path tmp = dir.resolve(META_FILE + ".tmp");
+        Files.write(tmp, out.array());
+        Files.move(tmp, meta, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private MappedByteBuffer map(int index) {
+        try (FileChannel ch = FileChannel.open(segmentPath(index), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map audit segment " + index, e);
+        }
+    }
+
+    private Path segmentPath(int index) {
+        return dir.resolve(String.format("audit-%06d.seg", index));
+    }
+
+    /**
+     * Rebuild dictionary, per-item chains and the tail from existing segments.
+     * Every event but the newest is named exactly once as some later event's
+     * predecessor, so XOR-ing all record numbers with all predecessor numbers
+     * leaves the chain head without remembering per-record state.
+     * Returns the recovered tail.
+     */
+    private long recover() {
+        long end = (long) segments.length * segmentBytes;
+        long last = -RECORD_SIZE;
+        Map<Integer, long[]> xors = new HashMap<>();
+        for (long pos = 0; pos < end; pos += RECORD_SIZE) {
+            MappedByteBuffer seg = mapped(pos);
+            int off = (int) (pos % segmentBytes);
+            int header = seg.getInt(off);
+            if (header == 0)
+                continue;
+            last = pos;
+            if (seg.get(off + 4) == DEFINE) {
+                byte[] bytes = new byte[seg.get(off + 5)];
+                seg.get(off + NOTE_OFFSET, bytes);
+                String sku = new String(bytes, StandardCharsets.UTF_8);
+                idsBySku.put(sku, header - 1);
+                skusById.add(sku);
+                chains.put(header - 1, new Chain());
+                xors.put(header - 1, new long[1]);
+            } else {
+                chains.get(header - 1).count.incrementAndGet();
+                long[] x = xors.get(header - 1);
+                x[0] ^= pos / RECORD_SIZE;
+                int prev = seg.getInt(off + PREV_OFFSET);
+                if (prev != NONE)
+                    x[0] ^= prev;
+            }
+        }
+        xors.forEach((id, x) -> {
+            Chain chain = chains.get(id);
+            if (chain.count.get() == 0)
+                return;
+            long head = x[0];
+            MappedByteBuffer seg = head >= 0 && head * RECORD_SIZE < end ? mapped(head * RECORD_SIZE) : null;
+            int off = (int) (head * RECORD_SIZE % segmentBytes);
+            if (seg != null && seg.getInt(off) == id + 1 && seg.get(off + 4) != DEFINE)
+                chain.head.set(head);
+            else
+                chain.broken = true; // a writer died mid-append; its successor points at a hole
+        });
+        tail.set(last + RECORD_SIZE);
+        return last + RECORD_SIZE;
+    }
+
+    /** One item's events, oldest first, read by walking its chain. */
+    private List<String> render(int itemId) {
+        Chain chain = chains.get(itemId);
+        long[] positions = chain.broken ? null : chainPositions(itemId, chain.head.get());
+        if (positions == null)
+            positions = scanPositions(itemId);
+        Arrays.sort(positions);
+        List<String> out = new ArrayList<>(positions.length);
+        for (long pos : positions) {
+            MappedByteBuffer seg = mapped(pos);
+            int off = (int) (pos % segmentBytes);
+            String note = null;
+            int len = seg.get(off + 5);
+            if (len > 0) {
+                byte[] bytes = new byte[len];
+                seg.get(off + NOTE_OFFSET, bytes);
+                note = new String(bytes, StandardCharsets.UTF_8);
+            }
+            out.add(AuditStore.format(AuditStore.Op.of(seg.get(off + 4)), seg.getLong(off + 8),
+                    seg.getInt(off + 16), seg.getInt(off + 20), seg.getInt(off + 24), note));
+        }
+        return Collections.unmodifiableList(out);
+    }
+
+    /**
+     * Positions on the item's chain starting at record {@code head}, waiting
+     * briefly for writers still filling a linked slot. Null if the chain is
+     * broken (a slot never published or owned by another item).
+     */
+    private long[] chainPositions(int itemId, long head) {
+        long[] out = new long[16];
+        int n = 0;
+        long deadline = System.nanoTime() + CHAIN_WAIT_NANOS;
+        for (long rec = head; rec != NONE; ) {
+            long pos = rec * RECORD_SIZE;
+            if (!awaitSlot(pos, deadline))
+                return null;
+            MappedByteBuffer seg = mapped(pos);
+            int off = (int) (pos % segmentBytes);
+            if ((int) HEADER.getAcquire(seg, off) != itemId + 1 || seg.get(off + 4) == DEFINE)
+                return null;
+            if (n == out.length)
+                out = Arrays.copyOf(out, n * 2);
+            out[n++] = pos;
+            rec = seg.getInt(off + PREV_OFFSET);
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** Fallback for broken chains: positions of the item's published events by full scan. */
+    private long[] scanPositions(int itemId) {
+        long[] out = new long[16];
+        int n = 0;
+        long end = tail.get();
+        for (long pos = 0; pos < end; pos += RECORD_SIZE) {
+            MappedByteBuffer seg = mapped(pos);
+            if (seg == null)
+                break;
+            int off = (int) (pos % segmentBytes);
+            if ((int) HEADER.getAcquire(seg, off) != itemId + 1 || seg.get(off + 4) == DEFINE)
+                continue;
+            if (n == out.length)
+                out = Arrays.copyOf(out, n * 2);
+            out[n++] = pos;
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** Per-item view that appends into the shared journal. */
+    private final class ItemStore implements AuditStore {
+        private final int itemId;
+        private final AtomicInteger count;
+
+        ItemStore(int itemId) {
+            this.itemId = itemId;
+            this.count = chains.get(itemId).count;
+        }
+
+        @Override
+        public void append(Op op, long epochNanos, int delta, int onHand, int reserved, String note) {
+            write(itemId, (byte) op.ordinal(), epochNanos, delta, onHand, reserved,
+                    note == null ? null : note.getBytes(StandardCharsets.UTF_8));
+            count.incrementAndGet();
+        }
+
+        @Override
+        public int size() {
+            return count.get();
+        }
+
+        @Override
+        public List<String> render() {
+            return MappedAuditJournal.this.render(itemId);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package impl;
+
+import java.math.RoundingMode;
+
+/**
+ * Exact money arithmetic on {@code long} minor units (paise).
+ * Rates are whole basis points (1 bp = 0.01%), so discounts and GST are integer
+ * operations with an explicit rounding mode — no doubles, no BigDecimal and no
+ * allocation on the pricing path.
+ */
+public final class Money {
+
+    /** Basis points in 100%. */
+    public static final int FULL_RATE_BP = 10_000;
+
+    private Money() {
+    }
+
+    /** Convert a rupee amount (e.g. 599.99) to paise, rounding half-up. */
+    public static long toPaise(double rupees) {
+        if (Double.isNaN(rupees) || Double.isInfinite(rupees))
+            throw new IllegalArgumentException("Amount must be finite");
+        return Math.round(rupees * 100.0);
+    }
+
+    /** Convert paise back to rupees for display or legacy double APIs. */
+    public static double toRupees(long paise) {
+        return paise / 100.0;
+    }
+
+    /** Convert a fraction (e.g. 0.18) to basis points, rounding half-up. */
+    public static int toBasisPoints(double fraction) {
+        return (int) Math.round(fraction * FULL_RATE_BP);
+    }
+
+    /** Unit price × quantity; throws ArithmeticException on overflow. */
+    public static long times(long unitPaise, int units) {
+        return Math.multiplyExact(unitPaise, (long) units);
+    }
+
+    /** {@code amount × bp / 10000}, rounded with the given mode. */
+    public static long percentOf(long amountPaise, int basisPoints, RoundingMode mode) {
+        return divide(Math.multiplyExact(amountPaise, (long) basisPoints), FULL_RATE_BP, mode);
+    }
+
+    /** Amount after taking {@code bp} off (discounts and markdowns). */
+    public static long discount(long amountPaise, int basisPoints, RoundingMode mode) {
+        return percentOf(amountPaise, FULL_RATE_BP - basisPoints, mode);
+    }
+
+    /** Amount with {@code bp} of tax added (e.g. GST at 1800 bp). */
+    public static long addTax(long amountPaise, int basisPoints, RoundingMode mode) {
+        return Math.addExact(amountPaise, percentOf(amountPaise, basisPoints, mode));
+    }
+
+    /** Integer division with a {@link RoundingMode}; {@code den} must be positive. */
+    public static long divide(long num, long den, RoundingMode mode) {
+        if (den <= 0)
+            throw new IllegalArgumentException("denominator must be > 0");
+        long q = num / den;
+        long r = num % den;
+        if (r == 0)
+            return q;
+        int sign = num < 0 ? -1 : 1;
+        long twice = Math.abs(r) * 2;
+        boolean awayFromZero;
+        switch (mode) {
+            case UP -> awayFromZero = true;
+            case DOWN -> awayFromZero = false;
+            case CEILING -> awayFromZero = sign > 0;
+            case FLOOR -> awayFromZero = sign < 0;
+            case HALF_UP -> awayFromZero = twice >= den;
+            case HALF_DOWN -> awayFromZero = twice > den;
+            case HALF_EVEN -> awayFromZero = twice > den || (twice == den && (q & 1) != 0);
+            default -> throw new ArithmeticException("Rounding necessary for " + num + "/" + den);
+        }
+        return awayFromZero ? q + sign : q;
+    }
+
+    /** Plain "1234.56" rendering of a paise amount. */
+    public static String format(long paise) {
+        long abs = Math.abs(paise);
+        long frac = abs % 100;
+        return (paise < 0 ? "-" : "") + abs / 100 + (frac < 10 ? ".0" : ".") + frac;
+    }
+}
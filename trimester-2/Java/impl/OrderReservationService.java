@@ -0,0 +1,91 @@
+package impl;
+
+import interfaces.StockItem;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Reserves every line of a multi-line order or none of them.
+ * Lines are merged per SKU and reserved in SKU order, so two orders touching the
+ * same items always visit them in the same sequence. Each item reserves through
+ * its own lock-free CAS, so no global lock is taken; on the first failure the
+ * lines already reserved are released again in one rollback step.
+ */
+public class OrderReservationService {
+
+    /** One order line: an item and the number of units wanted. */
+    public record OrderLine(StockItem item, int units) {
+        public OrderLine {
+            Objects.requireNonNull(item, "item");
+            if (units <= 0)
+                throw new IllegalArgumentException("units must be > 0");
+        }
+    }
+
+    private static final Comparator<OrderLine> BY_SKU =
+            Comparator.comparing((OrderLine l) -> l.item().getSku());
+
+    /**
+     * Attempt to reserve every line; returns true only if all succeeded.
+     * On failure nothing stays reserved; if a line throws, the lines before it
+     * are released and the exception is rethrown.
+     */
+    public boolean reserveAll(List<OrderLine> lines) {
+        OrderLine[] ordered = normalize(lines);
+        int i = 0;
+        try {
+            for (; i < ordered.length; i++) {
+                if (!ordered[i].item().reserve(ordered[i].units())) {
+                    rollback(ordered, i);
+                    return false;
+                }
+            }
+        } catch (RuntimeException e) {
+            rollback(ordered, i);
+            throw e;
+        }
+        return true;
+    }
+
+    /** Release all lines of an order previously reserved with {@link #reserveAll}. */
+    public void releaseAll(List<OrderLine> lines) {
+        OrderLine[] ordered = normalize(lines);
+        rollback(ordered, ordered.length);
+    }
+
+    /**
+     * Ship all lines of a reserved order; returns false if any line could not be
+     * shipped (lines shipped before it stay shipped).
+     */
+    public boolean shipAll(List<OrderLine> lines) {
+        boolean all = true;
+        for (OrderLine line : normalize(lines)) {
+            all &= line.item().shipReserved(line.units());
+        }
+        return all;
+    }
+
+    /** Undo the first {@code count} reservations, newest first. */
+    private static void rollback(OrderLine[] ordered, int count) {
+        for (int i = count - 1; i >= 0; i--) {
+            ordered[i].item().release(ordered[i].units());
+        }
+    }
+
+    /** Merge duplicate SKUs and sort lines into the global reservation order. */
+    private static OrderLine[] normalize(List<OrderLine> lines) {
+        Objects.requireNonNull(lines, "lines");
+        Map<StockItem, Integer> merged = new LinkedHashMap<>();
+        for (OrderLine line : lines) {
+            merged.merge(line.item(), line.units(), Math::addExact);
+        }
+        List<OrderLine> result = new ArrayList<>(merged.size());
+        merged.forEach((item, units) -> result.add(new OrderLine(item, units)));
+        result.sort(BY_SKU);
+        return result.toArray(new OrderLine[0]);
+    }
+}
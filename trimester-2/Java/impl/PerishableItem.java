@@ -1,29 +1,248 @@
 package impl;
 
+import interfaces.AuditStore;
+import interfaces.AuditStore.Op;
+import interfaces.ClockService;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
-/** Perishable inventory with an expiry date and custom reservation rule. */
+/**
+ * Perishable inventory held as lots, each with its own expiry date.
+ * Reservations and shipments consume the earliest-expiring usable lot first
+ * (FEFO). Lots live in a TreeMap keyed by expiry day, so finding the next lot is
+ * O(log lots). Lot bookkeeping is guarded by this item's monitor; quantities are
+ * still published through the base class's atomic state.
+ */
 public class PerishableItem extends BaseStockItem {
 
-    private final LocalDate expiryDate; // encapsulated
+    /** Notified when the earliest expiry date of an item changes. */
+    @FunctionalInterface
+    public interface ExpiryListener {
+        void expiryChanged(PerishableItem item, LocalDate previous);
+    }
+
+    /** Read-only view of one lot. */
+    public record Lot(LocalDate expiryDate, int quantity, int reserved) {
+        public int available() {
+            return quantity - reserved;
+        }
+    }
+
+    private static final class MutableLot {
+        int quantity;
+        int reserved;
+    }
+
+    private final LocalDate expiryDate; // default expiry for stock restocked without a date
+    private final TreeMap<Long, MutableLot> lots = new TreeMap<>();
+    private final List<ExpiryListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile LocalDate earliestExpiry;
+    private volatile long lotVersion; // bumped whenever lot quantities or reservations change
 
     public PerishableItem(String sku, String name, String location,
             double baseUnitPrice, int initialOnHand, LocalDate expiryDate) {
-        super(sku, name, location, baseUnitPrice, initialOnHand); // uses protected constructor from base class
+        this(sku, name, location, baseUnitPrice, initialOnHand, expiryDate, CachedClock.shared());
+    }
+
+    /** Perishable whose expiry checks read "today" from the given clock. */
+    public PerishableItem(String sku, String name, String location,
+            double baseUnitPrice, int initialOnHand, LocalDate expiryDate, ClockService clock) {
+        this(sku, name, location, baseUnitPrice, initialOnHand, expiryDate, new AuditTrail(), clock);
+    }
+
+    public PerishableItem(String sku, String name, String location,
+            double baseUnitPrice, int initialOnHand, LocalDate expiryDate,
+            AuditStore audit, ClockService clock) {
+        super(sku, name, location, baseUnitPrice, initialOnHand, audit, clock); // uses protected constructor from base class
         this.expiryDate = expiryDate;
-        addAudit("SET EXPIRY " + expiryDate);
+        this.earliestExpiry = expiryDate;
+        if (initialOnHand > 0)
+            lot(expiryDate).quantity = initialOnHand;
+        addAudit(Op.EXPIRY, (int) expiryDate.toEpochDay(), null);
     }
 
+    /** Earliest expiry among lots still in stock (the default expiry when empty). */
     public LocalDate getExpiryDate() {
-        return expiryDate;
+        return earliestExpiry;
+    }
+
+    /**
+     * Counter that changes whenever lot quantities or reservations change, so
+     * callers caching per-lot results (such as {@link QuoteCache}) can tell
+     * when they are stale.
+     */
+    public long getLotVersion() {
+        return lotVersion;
+    }
+
+    /** Snapshot of lots in FEFO order. */
+    public synchronized List<Lot> getLots() {
+        List<Lot> out = new ArrayList<>(lots.size());
+        lots.forEach((day, l) -> out.add(new Lot(LocalDate.ofEpochDay(day), l.quantity, l.reserved)));
+        return out;
+    }
+
+    public void addExpiryListener(ExpiryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeExpiryListener(ExpiryListener listener) {
+        listeners.remove(listener);
+    }
+
+    /** Receive a lot of {@code amount} units expiring on {@code expiry}. */
+    public synchronized void addLot(int amount, LocalDate expiry) {
+        super.restock(amount);
+        boolean wasEmpty = lots.isEmpty();
+        lot(expiry).quantity += amount;
+        lotVersion++;
+        addAudit(Op.LOT_ADDED, amount, (int) expiry.toEpochDay(), getQuantityReserved(), null);
+        refreshEarliest(wasEmpty);
+    }
+
+    /**
+     * Write off every lot expiring on or before {@code today} — the lots
+     * {@link #reserve} no longer draws from — including units that were reserved
+     * from them (expired goods are not eligible for resale). Returns the number
+     * of units written off; if the write-off cannot be applied, the reservations
+     * are restored, the lots are left as they were and 0 is returned.
+     */
+    public synchronized int writeOffExpired(LocalDate today) {
+        Map<Long, MutableLot> expired = lots.headMap(today.toEpochDay(), true);
+        int units = 0;
+        int reservedUnits = 0;
+        for (MutableLot l : expired.values()) {
+            units += l.quantity;
+            reservedUnits += l.reserved;
+        }
+        if (units == 0)
+            return 0;
+        if (reservedUnits > 0)
+            super.release(reservedUnits);
+        if (!writeOff(units)) {
+            if (reservedUnits > 0)
+                super.reserve(reservedUnits); // lot and item totals disagree; undo rather than drift further
+            return 0;
+        }
+        expired.clear();
+        lotVersion++;
+        refreshEarliest(false);
+        return units;
     }
 
-    /** Disallow new reservations if the item is expired today or earlier. */
+    /** Plain restocks go into a lot with the item's default expiry date. */
     @Override
-    public boolean reserve(int amount) {
-        if (expiryDate.isBefore(LocalDate.now()) || expiryDate.isEqual(LocalDate.now())) {
+    public void restock(int amount) {
+        addLot(amount, expiryDate);
+    }
+
+    /** Reserve from lots expiring after today, earliest first; expired lots cannot be reserved. */
+    @Override
+    public synchronized boolean reserve(int amount) {
+        if (amount <= 0)
+            return false;
+        long today = clock().today().toEpochDay();
+        Map<Long, MutableLot> usable = lots.tailMap(today, false);
+        long usableUnits = 0;
+        for (MutableLot l : usable.values()) {
+            usableUnits += l.quantity - l.reserved;
+            if (usableUnits >= amount)
+                break;
+        }
+        if (usableUnits < amount || !super.reserve(amount))
             return false;
+        int remaining = amount;
+        for (MutableLot l : usable.values()) {
+            int take = Math.min(remaining, l.quantity - l.reserved);
+            l.reserved += take;
+            remaining -= take;
+            if (remaining == 0)
+                break;
+        }
+        lotVersion++;
+        return true;
+    }
+
+    /** Releases from the latest-expiring reservations first, keeping FEFO picks. */
+    @Override
+    public synchronized void release(int amount) {
+        int remaining = Math.min(Math.max(amount, 0), getQuantityReserved());
+        super.release(amount);
+        for (MutableLot l : lots.descendingMap().values()) {
+            if (remaining == 0)
+                break;
+            int take = Math.min(remaining, l.reserved);
+            l.reserved -= take;
+            remaining -= take;
+        }
+        lotVersion++;
+    }
+
+    /** Ships reserved units from the earliest-expiring lots first. */
+    @Override
+    public synchronized boolean shipReserved(int amount) {
+        if (!super.shipReserved(amount))
+            return false;
+        int remaining = amount;
+        var it = lots.values().iterator();
+        while (remaining > 0 && it.hasNext()) {
+            MutableLot l = it.next();
+            int take = Math.min(remaining, l.reserved);
+            l.reserved -= take;
+            l.quantity -= take;
+            remaining -= take;
+            if (l.quantity == 0)
+                it.remove();
+        }
+        lotVersion++;
+        refreshEarliest(false);
+        return true;
+    }
+
+    /**
+     * How many of {@code units} would be drawn from lots inside (today, today + days],
+     * picking FEFO from the lots {@link #reserve} may use — those expiring after
+     * today. Units beyond stock take the treatment of the last lot considered.
+     */
+    synchronized int unitsExpiringWithin(int units, long today, int days) {
+        long limit = today + days;
+        int remaining = units;
+        int inWindow = 0;
+        boolean lastInWindow = false;
+        boolean any = false;
+        for (Map.Entry<Long, MutableLot> e : lots.tailMap(today, false).entrySet()) {
+            any = true;
+            lastInWindow = e.getKey() <= limit;
+            int take = Math.min(remaining, e.getValue().quantity - e.getValue().reserved);
+            if (lastInWindow)
+                inWindow += take;
+            remaining -= take;
+            if (remaining == 0)
+                return inWindow;
+        }
+        if (!any) {
+            long d = expiryDate.toEpochDay();
+            lastInWindow = lots.isEmpty() && d > today && d <= limit;
+        }
+        return lastInWindow ? inWindow + remaining : inWindow;
+    }
+
+    private MutableLot lot(LocalDate expiry) {
+        return lots.computeIfAbsent(expiry.toEpochDay(), d -> new MutableLot());
+    }
+
+    /** Publish the earliest expiry; listeners also hear when stock arrives in an empty item. */
+    private void refreshEarliest(boolean wasEmpty) {
+        LocalDate previous = earliestExpiry;
+        LocalDate next = lots.isEmpty() ? expiryDate : LocalDate.ofEpochDay(lots.firstKey());
+        if (!next.equals(previous) || wasEmpty) {
+            earliestExpiry = next;
+            for (ExpiryListener l : listeners)
+                l.expiryChanged(this, previous);
         }
-        return super.reserve(amount);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,103 @@
+package impl;
+
+import interfaces.PricingStrategy;
+import interfaces.StockItem;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.StringJoiner;
+
+/**
+ * Stacks pricing rules (e.g. bulk discount → clearance markdown → GST) into one
+ * strategy. The builder flattens nested pipelines and drops identity stages
+ * (flat rate), and the result evaluates every stage in a single pass over a
+ * final array using the stages' fixed-point {@code adjustPaise} hooks, so a
+ * deep stack costs roughly one strategy call per remaining stage.
+ */
+public final class PricingPipeline implements PricingStrategy {
+
+    /** What one stage did to the running amount. */
+    public record StageResult(String stage, long beforePaise, long afterPaise) {
+        public boolean fired() {
+            return beforePaise != afterPaise;
+        }
+    }
+
+    private final PricingStrategy[] stages;
+    private final String name;
+
+    private PricingPipeline(List<PricingStrategy> stages) {
+        this.stages = stages.toArray(new PricingStrategy[0]);
+        StringJoiner joiner = new StringJoiner(" → ");
+        for (PricingStrategy s : this.stages)
+            joiner.add(s.name());
+        this.name = this.stages.length == 0 ? "Flat Rate" : joiner.toString();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Collects stages in application order. */
+    public static final class Builder {
+        private final List<PricingStrategy> stages = new ArrayList<>();
+
+        public Builder then(PricingStrategy stage) {
+            Objects.requireNonNull(stage, "stage");
+            if (stage instanceof PricingPipeline p)
+                Collections.addAll(stages, p.stages);
+            else if (!(stage instanceof FlatRatePricing))
+                stages.add(stage);
+            return this;
+        }
+
+        public PricingPipeline build() {
+            return new PricingPipeline(stages);
+        }
+    }
+
+    @Override
+    public double price(StockItem item, int units) {
+        return Money.toRupees(pricePaise(item, units));
+    }
+
+    @Override
+    public long pricePaise(StockItem item, int units) {
+        if (units <= 0)
+            return 0L;
+        return adjustPaise(item, units, Money.times(item.getBaseUnitPricePaise(), units));
+    }
+
+    @Override
+    public long adjustPaise(StockItem item, int units, long amountPaise) {
+        long amount = amountPaise;
+        for (PricingStrategy stage : stages)
+            amount = stage.adjustPaise(item, units, amount);
+        return amount;
+    }
+
+    /** Run the pipeline and report each stage's effect, in order. */
+    public List<StageResult> explain(StockItem item, int units) {
+        List<StageResult> out = new ArrayList<>(stages.length);
+        if (units <= 0)
+            return out;
+        long amount = Money.times(item.getBaseUnitPricePaise(), units);
+        for (PricingStrategy stage : stages) {
+            long next = stage.adjustPaise(item, units, amount);
+            out.add(new StageResult(stage.name(), amount, next));
+            amount = next;
+        }
+        return out;
+    }
+
+    /** Number of stages after flattening. */
+    public int stageCount() {
+        return stages.length;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+}
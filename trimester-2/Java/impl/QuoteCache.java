@@ -0,0 +1,149 @@
+package impl;
+
+import interfaces.ClockService;
+import interfaces.PricingStrategy;
+import interfaces.StockItem;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU cache of fixed-point quotes keyed by (item, units, strategy).
+ *
+ * An entry remembers the item's base price when it was computed — and, for a
+ * {@link PerishableItem}, its lot version, since clearance prices depend on
+ * which lots are free — and is treated as stale if either differs on lookup.
+ * All entries are dropped when the
+ * clock's date changes, since date-dependent strategies such as
+ * {@link ClearancePricing} can flip at midnight.
+ */
+public class QuoteCache {
+
+    private record Key(StockItem item, int units, PricingStrategy strategy) {
+    }
+
+    private record Quote(long basePaise, long lotVersion, long pricePaise) {
+    }
+
+    private final int capacity;
+    private final ClockService clock;
+    private final LinkedHashMap<Key, Quote> entries;
+    private long day;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    public QuoteCache(int capacity) {
+        this(capacity, CachedClock.shared());
+    }
+
+    public QuoteCache(int capacity, ClockService clock) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("capacity must be > 0");
+        this.capacity = capacity;
+        this.clock = clock;
+        this.day = clock.today().toEpochDay();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Quote> eldest) {
+                if (size() <= QuoteCache.this.capacity)
+                    return false;
+                evictions++;
+                return true;
+            }
+        };
+    }
+
+    /** Cached equivalent of {@code strategy.pricePaise(item, units)}. */
+    public synchronized long quotePaise(StockItem item, int units, PricingStrategy strategy) {
+        long today = clock.today().toEpochDay();
+        if (today != day) {
+            invalidations += entries.size();
+            entries.clear();
+            day = today;
+        }
+        Key key = new Key(item, units, strategy);
+        long base = item.getBaseUnitPricePaise();
+        long version = item instanceof PerishableItem p ? p.getLotVersion() : 0L;
+        Quote q = entries.get(key);
+        if (q != null && q.basePaise() == base && q.lotVersion() == version) {
+            hits++;
+            return q.pricePaise();
+        }
+        if (q != null)
+            invalidations++;
+        misses++;
+        long price = strategy.pricePaise(item, units);
+        entries.put(key, new Quote(base, version, price));
+        return price;
+    }
+
+    /** Cached quote in rupees. */
+    public double quote(StockItem item, int units, PricingStrategy strategy) {
+        return Money.toRupees(quotePaise(item, units, strategy));
+    }
+
+    /** A strategy view that answers through this cache. */
+    public PricingStrategy wrap(PricingStrategy strategy) {
+        return new PricingStrategy() {
+            @Override
+            public double price(StockItem item, int units) {
+                return quote(item, units, strategy);
+            }
+
+            @Override
+            public long pricePaise(StockItem item, int units) {
+                return quotePaise(item, units, strategy);
+            }
+
+            @Override
+            public String name() {
+                return strategy.name() + " (cached)";
+            }
+        };
+    }
+
+    /** Drop every cached quote for one item. */
+    public synchronized void invalidate(StockItem item) {
+        int before = entries.size();
+        entries.keySet().removeIf(k -> k.item() == item);
+        invalidations += before - entries.size();
+    }
+
+    public synchronized void clear() {
+        invalidations += entries.size();
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /** Fraction of lookups served from the cache (0 when unused). */
+    public synchronized double hitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("QuoteCache[size=%d/%d, hitRate=%.1f%%, evictions=%d, invalidations=%d]",
+                entries.size(), capacity, hitRate() * 100, evictions, invalidations);
+    }
+}
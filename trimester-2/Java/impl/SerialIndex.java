@@ -0,0 +1,419 @@
+package impl;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Global serial → (item, state) index with O(1) expected lookup.
+ *
+ * Built for very large serial counts: serial text is packed into 1 MiB byte
+ * pages (one byte per char for Latin-1 serials), and the open-addressing table
+ * holds only primitives per entry — arena address, cached hash, owning item id,
+ * the serial's slot within that item, and state — instead of a map entry, boxed key and value object per serial.
+ * Shipped serials stay resolvable as SHIPPED; entries are only deleted to roll
+ * back a claim the caller could not complete (see {@link #unclaim}).
+ *
+ * Receiving goes through {@link #claim}, which rejects serials that are still in
+ * stock or reserved. A Bloom filter (8 bits per table slot, 4 probes) over the
+ * serial hashes sits in front of the table: a miss proves the serial absent, so
+ * it goes into the first empty slot from its home position without comparing
+ * the cached hashes along the probe chain. Only hits pay for a full lookup.
+ *
+ * Owners are held weakly, so the process-wide index does not keep retired items
+ * alive. An item gets its id before it claims anything and is bound to it only
+ * once constructed; {@link #unregister} retires an item explicitly. Serials
+ * still held by an unregistered or collected owner may be claimed again.
+ */
+public class SerialIndex {
+
+    public enum State { IN_STOCK, RESERVED, SHIPPED }
+
+    /**
+     * Result of a lookup: the item holding the serial and its state. The item
+     * is null if its owner was unregistered or garbage-collected.
+     */
+    public record Location(SerializedItem item, State state) {
+    }
+
+    private static final State[] STATES = State.values();
+    private static final int PAGE_BITS = 20;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int WIDE = 0x8000;
+    private static final int MAX_LENGTH = 0x7FFF;
+    private static final int BLOOM_PROBES = 4;
+
+    /** {@link #claimUndoable} results: rejected, or a fresh entry (previous-owner tokens are positive). */
+    static final long REJECTED = -1L;
+    static final long INSERTED = 0L;
+
+    private static final class Holder {
+        static final SerialIndex GLOBAL = new SerialIndex(1024);
+    }
+
+    private byte[][] pages = new byte[1][];
+    private int pageCount;
+    private int pageOffset = PAGE_SIZE; // forces a page on first append
+
+    private long[] addresses; // arena address + 1; 0 = empty slot
+    private int[] hashes;
+    private int[] owners;
+    private int[] positions;
+    private byte[] states;
+    private long[] bloom;
+    private int size;
+    private long filterSkips;
+
+    private static final WeakReference<SerializedItem> PENDING = new WeakReference<>(null);
+
+    private final List<WeakReference<SerializedItem>> items = new ArrayList<>(); // null once unregistered
+
+    public SerialIndex(int expectedSerials) {
+        int cap = Integer.highestOneBit(Math.max(16, expectedSerials * 4 / 3) - 1) << 1;
+        allocate(cap);
+    }
+
+    /** Process-wide index used by SerializedItems that are not given their own. */
+    public static SerialIndex global() {
+        return Holder.GLOBAL;
+    }
+
+    /** Allocate the id an item stores against its serials; see {@link #bind}. */
+    synchronized int newId() {
+        items.add(PENDING);
+        return items.size() - 1;
+    }
+
+    /** Attach a fully constructed item to the id it claimed its serials under. */
+    synchronized void bind(int itemId, SerializedItem item) {
+        items.set(itemId, new WeakReference<>(item));
+    }
+
+    /**
+     * Retire an item: its serials that are in stock or reserved become SHIPPED
+     * (so they can be received elsewhere) and lookups no longer resolve to it.
+     * Scans the whole table, so it is meant for occasional use.
+     */
+    public synchronized void unregister(SerializedItem item) {
+        for (int id = 0; id < items.size(); id++) {
+            WeakReference<SerializedItem> ref = items.get(id);
+            if (ref != null && ref != PENDING && ref.get() == item) {
+                items.set(id, null);
+                for (int k = 0; k < addresses.length; k++) {
+                    if (addresses[k] != 0 && owners[k] == id)
+                        states[k] = (byte) State.SHIPPED.ordinal();
+                }
+            }
+        }
+    }
+
+    /**
+     * Claim a serial being received into slot {@code position} of {@code itemId}
+     * as IN_STOCK. Returns false if it is already in stock or reserved anywhere;
+     * SHIPPED serials may come back (returns, refurbishment) and are moved to the
+     * new owner.
+     */
+    synchronized boolean claim(String serial, int itemId, int position) {
+        return claimUndoable(serial, itemId, position) != REJECTED;
+    }
+
+    /**
+     * As {@link #claim}, returning a token for {@link #unclaim}: {@link #REJECTED},
+     * {@link #INSERTED} for a new entry, or the previous owner and slot of a
+     * serial taken back from SHIPPED.
+     */
+    synchronized long claimUndoable(String serial, int itemId, int position) {
+        int h = serial.hashCode();
+        if (!mightContain(h)) {
+            filterSkips++;
+            insertAbsent(serial, h, itemId, position);
+            return INSERTED;
+        }
+        int slot = find(serial);
+        if (slot < 0) {
+            insert(serial, h, -slot - 1, itemId, position);
+            return INSERTED;
+        }
+        if (STATES[states[slot]] != State.SHIPPED && !retired(owners[slot]))
+            return REJECTED;
+        long token = 1 + (((long) owners[slot] << 31) | positions[slot]);
+        owners[slot] = itemId;
+        positions[slot] = position;
+        states[slot] = (byte) State.IN_STOCK.ordinal();
+        return token;
+    }
+
+    /**
+     * Roll back a successful {@link #claimUndoable}: a new entry is removed, a
+     * serial taken back from SHIPPED returns to its previous owner as SHIPPED.
+     */
+    synchronized void unclaim(String serial, long token) {
+        int slot = find(serial);
+        if (slot < 0 || token == REJECTED)
+            return;
+        if (token == INSERTED) {
+            delete(slot);
+            return;
+        }
+        owners[slot] = (int) ((token - 1) >>> 31);
+        positions[slot] = (int) ((token - 1) & Integer.MAX_VALUE);
+        states[slot] = (byte) State.SHIPPED.ordinal();
+    }
+
+    /**
+     * Claim a batch under one lock acquisition. Accepted serials take consecutive
+     * slots from {@code firstPosition}; rejected entries (already in stock or
+     * reserved, including repeats within the batch) are set to null.
+     * Returns the number accepted.
+     */
+    synchronized int claimAll(String[] batch, int count, int itemId, int firstPosition) {
+        int accepted = 0;
+        for (int k = 0; k < count; k++) {
+            if (claim(batch[k], itemId, firstPosition + accepted))
+                accepted++;
+            else
+                batch[k] = null;
+        }
+        return accepted;
+    }
+
+    /** Slot of a serial currently held (in stock or reserved) by {@code itemId}, or -1. */
+    synchronized int positionOf(CharSequence serial, int itemId) {
+        int slot = find(serial);
+        if (slot < 0 || owners[slot] != itemId || STATES[states[slot]] == State.SHIPPED)
+            return -1;
+        return positions[slot];
+    }
+
+    /** Change the state of a known serial; returns false if it is not indexed. */
+    synchronized boolean setState(CharSequence serial, State state) {
+        int slot = find(serial);
+        if (slot < 0)
+            return false;
+        states[slot] = (byte) state.ordinal();
+        return true;
+    }
+
+    /** Item and state for a serial, or null if it was never indexed. */
+    public synchronized Location lookup(String serial) {
+        int slot = find(serial);
+        return slot < 0 ? null : new Location(owner(owners[slot]), STATES[states[slot]]);
+    }
+
+    /** State of a serial, or null if unknown. */
+    public synchronized State stateOf(String serial) {
+        int slot = find(serial);
+        return slot < 0 ? null : STATES[states[slot]];
+    }
+
+    /** Number of serials indexed (all states). */
+    public synchronized int size() {
+        return size;
+    }
+
+    /** Claims the Bloom filter settled without a table lookup. */
+    public synchronized long getFilterSkips() {
+        return filterSkips;
+    }
+
+    /** Approximate heap bytes used by the table, filter and serial pages. */
+    public synchronized long footprintBytes() {
+        return addresses.length * 22L + (long) pageCount * PAGE_SIZE;
+    }
+
+    // —— table internals ——
+
+    /** Live owner for an id, or null if not yet bound, unregistered or collected. */
+    private SerializedItem owner(int itemId) {
+        WeakReference<SerializedItem> ref = items.get(itemId);
+        return ref == null ? null : ref.get();
+    }
+
+    /** True once an id's owner was unregistered or collected (not while it is being built). */
+    private boolean retired(int itemId) {
+        WeakReference<SerializedItem> ref = items.get(itemId);
+        return ref == null || ref != PENDING && ref.get() == null;
+    }
+
+    /**
+     * Slot holding {@code serial}, or {@code -(insertionSlot) - 1} if absent.
+     * Accepts any CharSequence so callers can probe with a reused buffer.
+     */
+    private int find(CharSequence serial) {
+        int h = hash(serial);
+        int mask = addresses.length - 1;
+        int i = spread(h) & mask;
+        while (addresses[i] != 0) {
+            if (hashes[i] == h && matches(addresses[i] - 1, serial))
+                return i;
+            i = (i + 1) & mask;
+        }
+        return -i - 1;
+    }
+
+    private void insert(String serial, int h, int slot, int itemId, int position) {
+        if ((size + 1) * 4L > addresses.length * 3L) {
+            rehash(addresses.length * 2);
+            slot = -find(serial) - 1;
+        }
+        addresses[slot] = store(serial) + 1;
+        hashes[slot] = h;
+        owners[slot] = itemId;
+        positions[slot] = position;
+        states[slot] = (byte) State.IN_STOCK.ordinal();
+        addToFilter(h);
+        size++;
+    }
+
+    /** Insert a serial the Bloom filter proved absent: first empty slot from its home. */
+    private void insertAbsent(String serial, int h, int itemId, int position) {
+        if ((size + 1) * 4L > addresses.length * 3L)
+            rehash(addresses.length * 2);
+        int mask = addresses.length - 1;
+        int i = spread(h) & mask;
+        while (addresses[i] != 0)
+            i = (i + 1) & mask;
+        insert(serial, h, i, itemId, position);
+    }
+
+    /** Remove an entry, shifting later members of its probe run back (no tombstones). */
+    private void delete(int slot) {
+        int mask = addresses.length - 1;
+        int hole = slot;
+        for (int i = (slot + 1) & mask; addresses[i] != 0; i = (i + 1) & mask) {
+            int home = spread(hashes[i]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                addresses[hole] = addresses[i];
+                hashes[hole] = hashes[i];
+                owners[hole] = owners[i];
+                positions[hole] = positions[i];
+                states[hole] = states[i];
+                hole = i;
+            }
+        }
+        addresses[hole] = 0;
+        size--;
+    }
+
+    private void rehash(int cap) {
+        long[] a = addresses;
+        int[] h = hashes, o = owners, p = positions;
+        byte[] s = states;
+        allocate(cap);
+        int mask = cap - 1;
+        for (int k = 0; k < a.length; k++) {
+            if (a[k] == 0)
+                continue;
+            int i = spread(h[k]) & mask;
+            while (addresses[i] != 0)
+                i = (i + 1) & mask;
+            addresses[i] = a[k];
+            hashes[i] = h[k];
+            owners[i] = o[k];
+            positions[i] = p[k];
+            states[i] = s[k];
+            addToFilter(h[k]);
+        }
+    }
+
+    private void allocate(int cap) {
+        addresses = new long[cap];
+        hashes = new int[cap];
+        owners = new int[cap];
+        positions = new int[cap];
+        states = new byte[cap];
+        bloom = new long[cap / 8]; // 8 bits per slot; cap is a power of two >= 16
+    }
+
+    /** Same value as {@link String#hashCode()}, which is cached for Strings. */
+    private static int hash(CharSequence serial) {
+        if (serial instanceof String s)
+            return s.hashCode();
+        int h = 0;
+        for (int k = 0, n = serial.length(); k < n; k++)
+            h = 31 * h + serial.charAt(k);
+        return h;
+    }
+
+    private static int spread(int h) {
+        return h ^ (h >>> 16);
+    }
+
+    // —— Bloom filter (double hashing over the cached String hash) ——
+
+    private void addToFilter(int h) {
+        int bitMask = bloom.length * 64 - 1;
+        int a = mix(h), b = mix(a) | 1;
+        for (int k = 0; k < BLOOM_PROBES; k++) {
+            int bit = (a + k * b) & bitMask;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(int h) {
+        int bitMask = bloom.length * 64 - 1;
+        int a = mix(h), b = mix(a) | 1;
+        for (int k = 0; k < BLOOM_PROBES; k++) {
+            int bit = (a + k * b) & bitMask;
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    private static int mix(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 15);
+    }
+
+    // —— serial arena ——
+
+    /** Append the serial's chars to the arena; entries never straddle pages. */
+    private long store(String serial) {
+        int len = serial.length();
+        if (len > MAX_LENGTH)
+            throw new IllegalArgumentException("Serial too long");
+        boolean wide = false;
+        for (int k = 0; k < len && !wide; k++)
+            wide = serial.charAt(k) > 0xFF;
+        int bytes = 2 + (wide ? 2 * len : len);
+        if (pageOffset + bytes > PAGE_SIZE) {
+            if (pageCount == pages.length)
+                pages = Arrays.copyOf(pages, pageCount * 2);
+            pages[pageCount++] = new byte[PAGE_SIZE];
+            pageOffset = 0;
+        }
+        byte[] page = pages[pageCount - 1];
+        long address = ((long) (pageCount - 1) << PAGE_BITS) | pageOffset;
+        int header = len | (wide ? WIDE : 0);
+        int p = pageOffset;
+        page[p++] = (byte) (header >>> 8);
+        page[p++] = (byte) header;
+        for (int k = 0; k < len; k++) {
+            char c = serial.charAt(k);
+            if (wide)
+                page[p++] = (byte) (c >>> 8);
+            page[p++] = (byte) c;
+        }
+        pageOffset = p;
+        return address;
+    }
+
+    private boolean matches(long address, CharSequence serial) {
+        byte[] page = pages[(int) (address >>> PAGE_BITS)];
+        int p = (int) (address & (PAGE_SIZE - 1));
+        int header = ((page[p] & 0xFF) << 8) | (page[p + 1] & 0xFF);
+        int len = header & MAX_LENGTH;
+        if (len != serial.length())
+            return false;
+        boolean wide = (header & WIDE) != 0;
+        p += 2;
+        for (int k = 0; k < len; k++) {
+            int c = wide ? ((page[p++] & 0xFF) << 8) | (page[p++] & 0xFF) : page[p++] & 0xFF;
+            if (c != serial.charAt(k))
+                return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,131 @@
+package impl;
+
+import java.util.Arrays;
+
+/**
+ * Append-only, front-coded serial storage used by {@link SerializedItem}.
+ *
+ * Serials are grouped into blocks of 16. The first serial of a block is stored
+ * whole; each following one stores only the length of the prefix it shares with
+ * its predecessor and the differing suffix. Lengths and chars are varints, so
+ * ASCII serials take one byte per char. Sequential serials such as "S-AX9Q1",
+ * "S-AX9Q2" cost about 3 bytes each plus a 4-byte offset per block, against
+ * ~50 bytes for a String. Reading a slot decodes at most 16 entries of its block.
+ */
+final class SerialStore {
+
+    private static final int BLOCK_SHIFT = 4;
+    private static final int BLOCK = 1 << BLOCK_SHIFT;
+
+    private byte[] data = new byte[256];
+    private int length; // bytes used in data
+    private int[] blockStarts = new int[16];
+    private int size; // serials held
+
+    private char[] last = new char[32]; // most recently appended serial
+    private int lastLength;
+
+    /** Number of serials stored. */
+    int size() {
+        return size;
+    }
+
+    /** Append a serial as slot {@link #size()}. */
+    void append(String serial) {
+        int len = serial.length();
+        int shared = 0;
+        if ((size & (BLOCK - 1)) == 0) {
+            int block = size >>> BLOCK_SHIFT;
+            if (block == blockStarts.length)
+                blockStarts = Arrays.copyOf(blockStarts, block * 2);
+            blockStarts[block] = length;
+        } else {
+            int max = Math.min(len, lastLength);
+            while (shared < max && last[shared] == serial.charAt(shared))
+                shared++;
+        }
+        ensure(length + 10 + 3 * (len - shared));
+        writeVarint(shared);
+        writeVarint(len - shared);
+        if (last.length < len)
+            last = Arrays.copyOf(last, Math.max(len, last.length * 2));
+        for (int k = shared; k < len; k++) {
+            char c = serial.charAt(k);
+            writeVarint(c);
+            last[k] = c;
+        }
+        lastLength = len;
+        size++;
+    }
+
+    /** Decode slot {@code slot} into {@code out} (cleared first). */
+    void get(int slot, StringBuilder out) {
+        int pos = blockStarts[slot >>> BLOCK_SHIFT];
+        out.setLength(0);
+        for (int k = slot & ~(BLOCK - 1); k <= slot; k++) {
+            int shared = readVarint(pos);
+            pos += varintLength(shared);
+            int suffix = readVarint(pos);
+            pos += varintLength(suffix);
+            out.setLength(shared);
+            for (int c = 0; c < suffix; c++) {
+                int ch = readVarint(pos);
+                pos += varintLength(ch);
+                out.append((char) ch);
+            }
+        }
+    }
+
+    String get(int slot) {
+        StringBuilder sb = new StringBuilder();
+        get(slot, sb);
+        return sb.toString();
+    }
+
+    /** Discard the first {@code count} slots: whole blocks of 16, or everything. */
+    void dropHead(int count) {
+        if (count <= 0)
+            return;
+        if (((count & (BLOCK - 1)) != 0 && count != size) || count > size)
+            throw new IllegalArgumentException("Can only drop whole blocks");
+        int blocks = count >>> BLOCK_SHIFT;
+        int usedBlocks = (size + BLOCK - 1) >>> BLOCK_SHIFT;
+        int cut = count < size ? blockStarts[blocks] : length;
+        System.arraycopy(data, cut, data, 0, length - cut);
+        length -= cut;
+        for (int b = blocks; b < usedBlocks && count < size; b++)
+            blockStarts[b - blocks] = blockStarts[b] - cut;
+        size -= count;
+        if (size == 0)
+            lastLength = 0;
+    }
+
+    // —— varints ——
+
+    private void ensure(int capacity) {
+        if (capacity > data.length)
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+    }
+
+    private void writeVarint(int v) {
+        while ((v & ~0x7F) != 0) {
+            data[length++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        data[length++] = (byte) v;
+    }
+
+    private int readVarint(int pos) {
+        int v = 0;
+        for (int shift = 0;; shift += 7) {
+            byte b = data[pos++];
+            v |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+    }
+
+    private static int varintLength(int v) {
+        return v < 0x80 ? 1 : v < 0x4000 ? 2 : v < 0x200000 ? 3 : 4;
+    }
+}
@@ -1,49 +1,385 @@
 package impl;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import interfaces.AuditStore;
+import interfaces.AuditStore.Op;
+import interfaces.ClockService;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Objects;
 
 /**
- * Items tracked by serial number. Reservation consumes specific serials (FIFO).
+ * Items tracked by serial number. Reservations claim concrete serials, either
+ * FIFO in receiving order or by requested serial, and shipping consumes exactly
+ * the serials that were reserved.
+ *
+ * Serials occupy slots in receiving order, front-coded in a {@link SerialStore};
+ * two bitsets mark which slots are still in stock and which are reserved, so
+ * reserve/release/ship touch only bits (skipping 64 slots per word) and never
+ * move strings between collections. A third bitset marks reservations made by
+ * serial, so a count-based release unbinds those last. Slots are absolute
+ * numbers — the index stores them for by-serial reservations — and the shipped
+ * prefix is dropped in whole words.
+ * Serials are mirrored into a {@link SerialIndex} (the global one by default),
+ * so any serial can be traced back to its item and state. The index holds the
+ * item weakly; call {@link SerialIndex#unregister} to retire it explicitly.
  */
 public class SerializedItem extends BaseStockItem {
 
-    private final Deque<String> serials = new ArrayDeque<>();
+    /** Outcome of a bulk receipt. */
+    public record ImportResult(int accepted, int duplicates) {
+    }
+
+    private static final int IMPORT_BATCH = 4096;
+
+    private final SerialIndex index;
+    private final int indexId;
+
+    private final SerialStore slots = new SerialStore();
+    private final StringBuilder scratch = new StringBuilder(); // decoded serial for index updates
+    private long[] live = new long[1]; // slot holds a serial still in stock
+    private long[] held = new long[1]; // slot's serial is reserved
+    private long[] pinned = new long[1]; // held slot was reserved by serial
+    private int base; // absolute slot number of slots[0]; a multiple of 64
+    private int tail; // one past the last used slot, relative to base
+    private int liveCount;
+    private int heldCount;
 
     public SerializedItem(String sku, String name, String location,
             double baseUnitPrice, int initialOnHand, Iterable<String> initialSerials) {
-        super(sku, name, location, baseUnitPrice, initialOnHand);
-        if (initialSerials != null) {
-            for (String s : initialSerials) {
-                if (s != null && !s.isBlank())
-                    serials.addLast(s);
-            }
+        this(sku, name, location, baseUnitPrice, initialOnHand, initialSerials, SerialIndex.global());
+    }
+
+    /** Serialized item whose serials are recorded in the given index. */
+    public SerializedItem(String sku, String name, String location,
+            double baseUnitPrice, int initialOnHand, Iterable<String> initialSerials, SerialIndex index) {
+        this(sku, name, location, baseUnitPrice, initialOnHand, initialSerials, index,
+                new AuditTrail(), CachedClock.shared());
+    }
+
+    /** Full constructor: serial index, audit store (e.g. a bounded trail) and clock. */
+    public SerializedItem(String sku, String name, String location,
+            double baseUnitPrice, int initialOnHand, Iterable<String> initialSerials, SerialIndex index,
+            AuditStore audit, ClockService clock) {
+        super(sku, name, location, baseUnitPrice, initialOnHand, audit, clock);
+        this.index = Objects.requireNonNull(index, "index");
+        this.indexId = index.newId();
+        if (initialSerials != null)
+            claimInitial(initialSerials);
+        addAudit(Op.SERIALS_INIT, liveCount, null);
+        index.bind(indexId, this); // only a fully built item becomes visible through the index
+    }
+
+    /** The serial the next FIFO reservation would claim, or null. */
+    public synchronized String peekNextSerial() {
+        int i = nextFree(0);
+        return i < 0 ? null : slots.get(i);
+    }
+
+    /** Serials currently reserved, in receiving order. */
+    public synchronized List<String> getReservedSerials() {
+        List<String> out = new ArrayList<>(heldCount);
+        for (int i = nextHeld(0); i >= 0; i = nextHeld(i + 1))
+            out.add(slots.get(i));
+        return out;
+    }
+
+    /** Reserves units and binds them to the oldest unreserved serials. */
+    @Override
+    public synchronized boolean reserve(int amount) {
+        if (!super.reserve(amount))
+            return false;
+        int remaining = amount;
+        for (int i = nextFree(0); i >= 0 && remaining > 0; i = nextFree(i + 1)) {
+            hold(i);
+            remaining--;
         }
-        addAudit("SERIALS init count=" + serials.size());
+        return true;
     }
 
-    public String peekNextSerial() {
-        return serials.peekFirst();
+    /** Reserve the unit carrying {@code serial}; false if it is not available here. */
+    public synchronized boolean reserveSerial(String serial) {
+        int i = slotOf(serial);
+        if (i < 0 || isSet(held, i) || !super.reserve(1))
+            return false;
+        hold(i);
+        set(pinned, i);
+        return true;
+    }
+
+    /**
+     * Releases units, unbinding the most recently received serials that were
+     * reserved by count; serials reserved by {@link #reserveSerial} are only
+     * unbound once no count-based reservation is left to release.
+     */
+    @Override
+    public synchronized void release(int amount) {
+        super.release(amount);
+        int excess = heldCount - getQuantityReserved();
+        excess = unholdNewest(excess, false);
+        unholdNewest(excess, true);
     }
 
-    /** Ship will also pop serials, ensuring consistency with quantity movements. */
+    /** Release the reservation on {@code serial}; false if it is not reserved here. */
+    public synchronized boolean releaseSerial(String serial) {
+        int i = slotOf(serial);
+        if (i < 0 || !isSet(held, i))
+            return false;
+        super.release(1);
+        unhold(i);
+        return true;
+    }
+
+    /** Ships the reserved serials (oldest first), keeping serials in step with quantities. */
     @Override
-    public boolean shipReserved(int amount) {
+    public synchronized boolean shipReserved(int amount) {
         if (!super.shipReserved(amount))
             return false;
-        for (int i = 0; i < amount; i++) {
-            serials.pollFirst();
+        int remaining = amount;
+        for (int i = nextHeld(0); i >= 0 && remaining > 0; i = nextHeld(i + 1)) {
+            clear(held, i);
+            clear(pinned, i);
+            heldCount--;
+            ship(i);
+            remaining--;
+        }
+        // units reserved while no serial was free take the oldest free serials
+        for (int i = nextFree(0); i >= 0 && remaining > 0; i = nextFree(i + 1)) {
+            ship(i);
+            remaining--;
         }
-        addAudit("SERIALS shipped=" + amount + ", remaining=" + serials.size());
+        dropShippedHead();
+        addAudit(Op.SERIALS_SHIPPED, amount, liveCount, getQuantityReserved(), null);
         return true;
     }
 
-    /** Add a new unit with its serial when restocking serialized items. */
-    public void restockWithSerial(String serial) {
+    /**
+     * Add a new unit with its serial when restocking serialized items.
+     * Rejects serials already in stock or reserved (here or in any other item
+     * sharing the index); previously shipped serials may be received again.
+     */
+    public synchronized void restockWithSerial(String serial) {
         Objects.requireNonNull(serial, "serial");
-        restock(1);
-        serials.addLast(serial);
-        addAudit("SERIAL added=" + serial);
+        long token = index.claimUndoable(serial, indexId, base + tail);
+        if (token == SerialIndex.REJECTED)
+            throw new IllegalArgumentException("Duplicate serial: " + serial);
+        try {
+            restock(1);
+        } catch (RuntimeException e) {
+            index.unclaim(serial, token); // don't leave the serial owned by stock that never arrived
+            throw e;
+        }
+        append(serial);
+        addAudit(Op.SERIAL_ADDED, 1, serial);
+    }
+
+    /** Bulk-receive serials from a file; see {@link #receiveSerials(InputStream)}. */
+    public ImportResult receiveSerials(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return receiveSerials(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read serials from " + file, e);
+        }
+    }
+
+    /**
+     * Stream serials (UTF-8, one per line, blank lines ignored) into stock.
+     * Each batch of up to 4096 lines is read and parsed without holding this
+     * item's monitor; the monitor is taken only to claim the batch in the index,
+     * append the accepted serials and add them to on-hand, so reservations and
+     * shipments proceed while the stream is read. Duplicates — against stock
+     * anywhere or earlier in the same stream — are rejected in the same pass and
+     * counted rather than thrown. Each batch is recorded as one aggregated
+     * SERIALS_RECEIVED audit entry; batches already received stay in stock if
+     * the stream fails midway.
+     */
+    public ImportResult receiveSerials(InputStream in) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        String[] batch = new String[IMPORT_BATCH];
+        int accepted = 0;
+        int duplicates = 0;
+        try {
+            while (true) {
+                int n = 0;
+                String line;
+                while (n < IMPORT_BATCH && (line = reader.readLine()) != null) {
+                    String serial = line.strip();
+                    if (!serial.isEmpty())
+                        batch[n++] = serial;
+                }
+                if (n == 0)
+                    break;
+                int ok = receiveBatch(batch, n);
+                accepted += ok;
+                duplicates += n - ok;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read serials", e);
+        }
+        return new ImportResult(accepted, duplicates);
+    }
+
+    /** Claim, append and receive one parsed batch; returns the number accepted. */
+    private synchronized int receiveBatch(String[] batch, int n) {
+        if (getQuantityOnHand() > Integer.MAX_VALUE - n)
+            throw new IllegalArgumentException("Receipt would overflow on-hand quantity");
+        int ok = index.claimAll(batch, n, indexId, base + tail);
+        for (int k = 0; k < n; k++) {
+            if (batch[k] != null)
+                append(batch[k]);
+        }
+        if (ok > 0)
+            receive(ok, Op.SERIALS_RECEIVED, ok < n ? "duplicates=" + (n - ok) : null);
+        return ok;
+    }
+
+    // —— slot bookkeeping ——
+
+    /** Claim the constructor's serials; on a duplicate, release those already claimed and throw. */
+    private void claimInitial(Iterable<String> initialSerials) {
+        List<String> claimed = new ArrayList<>();
+        long[] tokens = new long[16];
+        for (String s : initialSerials) {
+            if (s == null || s.isBlank())
+                continue;
+            long token = index.claimUndoable(s, indexId, base + claimed.size());
+            if (token == SerialIndex.REJECTED) {
+                for (int k = claimed.size() - 1; k >= 0; k--)
+                    index.unclaim(claimed.get(k), tokens[k]);
+                throw new IllegalArgumentException("Duplicate serial: " + s);
+            }
+            if (claimed.size() == tokens.length)
+                tokens = Arrays.copyOf(tokens, tokens.length * 2);
+            tokens[claimed.size()] = token;
+            claimed.add(s);
+        }
+        for (String s : claimed)
+            append(s);
+    }
+
+    private void append(String serial) {
+        if (tail == live.length << 6) {
+            live = Arrays.copyOf(live, live.length * 2);
+            held = Arrays.copyOf(held, held.length * 2);
+            pinned = Arrays.copyOf(pinned, pinned.length * 2);
+        }
+        slots.append(serial);
+        set(live, tail);
+        tail++;
+        liveCount++;
+    }
+
+    /** Relative slot of a serial in stock here, or -1. */
+    private int slotOf(String serial) {
+        int i = index.positionOf(serial, indexId) - base;
+        return i >= 0 && i < tail && isSet(live, i) ? i : -1;
+    }
+
+    private void hold(int i) {
+        set(held, i);
+        heldCount++;
+        slots.get(i, scratch);
+        index.setState(scratch, SerialIndex.State.RESERVED);
+    }
+
+    private void unhold(int i) {
+        clear(held, i);
+        clear(pinned, i);
+        heldCount--;
+        slots.get(i, scratch);
+        index.setState(scratch, SerialIndex.State.IN_STOCK);
+    }
+
+    private void ship(int i) {
+        clear(live, i);
+        liveCount--;
+        slots.get(i, scratch);
+        index.setState(scratch, SerialIndex.State.SHIPPED);
+    }
+
+    /** Drop fully shipped leading words once they make up half of the used slots. */
+    private void dropShippedHead() {
+        int usedWords = (tail + 63) >>> 6;
+        int words = 0;
+        while (words < usedWords && live[words] == 0)
+            words++;
+        int drop = words << 6;
+        if (drop == 0 || drop * 2 < tail)
+            return;
+        int kept = Math.max(tail - drop, 0);
+        slots.dropHead(Math.min(drop, tail));
+        System.arraycopy(live, words, live, 0, usedWords - words);
+        System.arraycopy(held, words, held, 0, usedWords - words);
+        System.arraycopy(pinned, words, pinned, 0, usedWords - words);
+        Arrays.fill(live, usedWords - words, usedWords, 0L);
+        Arrays.fill(held, usedWords - words, usedWords, 0L);
+        Arrays.fill(pinned, usedWords - words, usedWords, 0L);
+        base += drop;
+        tail = kept;
+    }
+
+    /** First slot at or after {@code from} that is in stock and unreserved, or -1. */
+    private int nextFree(int from) {
+        for (int w = from >>> 6, n = (tail + 63) >>> 6; w < n; w++) {
+            long bits = live[w] & ~held[w];
+            if (w == from >>> 6)
+                bits &= -1L << from;
+            if (bits != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        return -1;
+    }
+
+    private int nextHeld(int from) {
+        for (int w = from >>> 6, n = (tail + 63) >>> 6; w < n; w++) {
+            long bits = held[w];
+            if (w == from >>> 6)
+                bits &= -1L << from;
+            if (bits != 0)
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+        }
+        return -1;
+    }
+
+    /** Unbind up to {@code count} held slots, newest first, that are (or are not) pinned; returns how many remain. */
+    private int unholdNewest(int count, boolean pinnedSlots) {
+        for (int i = prevHeld(tail - 1, pinnedSlots); i >= 0 && count > 0; i = prevHeld(i - 1, pinnedSlots)) {
+            unhold(i);
+            count--;
+        }
+        return count;
+    }
+
+    private int prevHeld(int from, boolean pinnedSlots) {
+        if (from < 0)
+            return -1;
+        for (int w = from >>> 6; w >= 0; w--) {
+            long bits = held[w] & (pinnedSlots ? pinned[w] : ~pinned[w]);
+            if (w == from >>> 6)
+                bits &= -1L >>> (63 - (from & 63));
+            if (bits != 0)
+                return (w << 6) + 63 - Long.numberOfLeadingZeros(bits);
+        }
+        return -1;
+    }
+
+    private static boolean isSet(long[] bits, int i) {
+        return (bits[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static void set(long[] bits, int i) {
+        bits[i >>> 6] |= 1L << i;
+    }
+
+    private static void clear(long[] bits, int i) {
+        bits[i >>> 6] &= ~(1L << i);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,296 @@
+package impl;
+
+import interfaces.AuditStore.Op;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rebuilds item quantities by replaying a {@link MappedAuditJournal}.
+ *
+ * INIT resets an item to its initial on-hand; every other quantity event applies
+ * its delta. Because an item's INIT is always journalled before any of its later
+ * events, a scan in append order yields the live quantities. Snapshots store the
+ * replayed quantities with the journal position they cover, so a restart only
+ * replays the tail. Replay stops at the first slot a writer has not published
+ * yet; the snapshot position never moves past it, so that event is replayed
+ * next time rather than lost.
+ *
+ * The byte range is split into one contiguous chunk per worker, so each record
+ * is read once. Deltas commute, so a worker only sums them per item; INIT is
+ * the exception, so a worker that sees an item's INIT restarts that item's sums
+ * from the initial on-hand and flags it. Chunks are then merged in journal
+ * order: a flagged item takes the chunk's values, any other adds them.
+ */
+public class StockRecovery {
+
+    private static final int SNAPSHOT_MAGIC = 0x534E4150; // "SNAP"
+    private static final long PUBLISH_TIMEOUT_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    /** Receives recovered quantities per SKU. */
+    @FunctionalInterface
+    public interface StateVisitor {
+        void visit(String sku, int onHand, int reserved);
+    }
+
+    /** Replayed quantities indexed by journal item id. */
+    public static final class State {
+        private final long position;
+        private final String[] skus;
+        private final int[] onHand;
+        private final int[] reserved;
+
+        private State(long position, String[] skus, int[] onHand, int[] reserved) {
+            this.position = position;
+            this.skus = skus;
+            this.onHand = onHand;
+            this.reserved = reserved;
+        }
+
+        /** Journal byte position this state covers. */
+        public long getPosition() {
+            return position;
+        }
+
+        public int size() {
+            return skus.length;
+        }
+
+        public String getSku(int itemId) {
+            return skus[itemId];
+        }
+
+        public int getOnHand(int itemId) {
+            return onHand[itemId];
+        }
+
+        public int getReserved(int itemId) {
+            return reserved[itemId];
+        }
+
+        public void forEach(StateVisitor visitor) {
+            for (int i = 0; i < skus.length; i++)
+                visitor.visit(skus[i], onHand[i], reserved[i]);
+        }
+    }
+
+    private final MappedAuditJournal journal;
+    private final int workers;
+
+    public StockRecovery(MappedAuditJournal journal, int workers) {
+        if (workers <= 0)
+            throw new IllegalArgumentException("workers must be > 0");
+        this.journal = journal;
+        this.workers = workers;
+    }
+
+    /** Replay the whole journal. */
+    public State replay() {
+        return replayFrom(new State(0L, new String[0], new int[0], new int[0]));
+    }
+
+    /** Load the snapshot (if present) and replay only the journal tail after it. */
+    public State recover(Path snapshot) {
+        return Files.exists(snapshot) ? replayFrom(readSnapshot(snapshot)) : replay();
+    }
+
+    /** Bring the snapshot up to date with the journal and return the new state. */
+    public State writeSnapshot(Path snapshot) {
+        State state = recover(snapshot);
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(state.position);
+            out.writeInt(state.size());
+            for (int i = 0; i < state.size(); i++) {
+                out.writeUTF(state.skus[i]);
+                out.writeInt(state.onHand[i]);
+                out.writeInt(state.reserved[i]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write snapshot " + snapshot, e);
+        }
+        try {
+            Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot publish snapshot " + snapshot, e);
+        }
+        return state;
+    }
+
+    /** Refresh the snapshot periodically on the caller's scheduler. */
+    public ScheduledFuture<?> scheduleSnapshots(ScheduledExecutorService scheduler, Path snapshot, Duration period) {
+        long millis = period.toMillis();
+        return scheduler.scheduleWithFixedDelay(() -> writeSnapshot(snapshot), millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    // —— internals ——
+
+    private State replayFrom(State base) {
+        long from = base.position;
+        long to = journal.publishedUpTo(from, journal.length(), PUBLISH_TIMEOUT_NANOS);
+        int n = journal.itemCount();
+        String[] skus = new String[n];
+        for (int i = 0; i < n; i++)
+            skus[i] = journal.skuOf(i);
+        int[] onHand = Arrays.copyOf(base.onHand, n);
+        int[] reserved = Arrays.copyOf(base.reserved, n);
+
+        long records = (to - from) / MappedAuditJournal.RECORD_SIZE;
+        int chunks = (int) Math.min(workers, records);
+        if (chunks > 0) {
+            // chunk 0 applies straight onto the base state; later chunks collect sums
+            Delta[] deltas = new Delta[chunks];
+            ExecutorService pool = Executors.newFixedThreadPool(Math.min(workers, chunks));
+            try {
+                List<Callable<Void>> tasks = new ArrayList<>(chunks);
+                for (int c = 0; c < chunks; c++) {
+                    int chunk = c;
+                    long start = from + records * c / chunks * MappedAuditJournal.RECORD_SIZE;
+                    long end = from + records * (c + 1) / chunks * MappedAuditJournal.RECORD_SIZE;
+                    tasks.add(() -> {
+                        if (chunk == 0) {
+                            journal.forEach(start, end, (id, op, nanos, delta, oh, rs) ->
+                                    apply(op, id, delta, onHand, reserved));
+                        } else {
+                            Delta d = new Delta(n);
+                            journal.forEach(start, end, d);
+                            deltas[chunk] = d;
+                        }
+                        return null;
+                    });
+                }
+                run(pool, tasks);
+                if (chunks > 1)
+                    run(pool, mergeTasks(deltas, chunks, n, onHand, reserved));
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return new State(to, skus, onHand, reserved);
+    }
+
+    /** Fold chunks 1.. into the totals in journal order, split by item range. */
+    private static List<Callable<Void>> mergeTasks(Delta[] deltas, int parts, int n, int[] onHand, int[] reserved) {
+        List<Callable<Void>> tasks = new ArrayList<>(parts);
+        for (int p = 0; p < parts; p++) {
+            int lo = (int) ((long) n * p / parts);
+            int hi = (int) ((long) n * (p + 1) / parts);
+            tasks.add(() -> {
+                for (int c = 1; c < deltas.length; c++) {
+                    Delta d = deltas[c];
+                    for (int id = lo; id < hi; id++) {
+                        if (d.isReset(id)) {
+                            onHand[id] = d.onHand[id];
+                            reserved[id] = d.reserved[id];
+                        } else {
+                            onHand[id] += d.onHand[id];
+                            reserved[id] += d.reserved[id];
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        return tasks;
+    }
+
+    private static void run(ExecutorService pool, List<Callable<Void>> tasks) {
+        try {
+            for (Future<Void> f : pool.invokeAll(tasks))
+                f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Replay interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replay failed", e.getCause());
+        }
+    }
+
+    /**
+     * Per-item sums over one chunk. Items whose INIT falls inside the chunk are
+     * flagged in {@code reset} and hold absolute values instead of deltas.
+     */
+    private static final class Delta implements MappedAuditJournal.RecordVisitor {
+        final int[] onHand;
+        final int[] reserved;
+        final long[] reset;
+
+        Delta(int n) {
+            onHand = new int[n];
+            reserved = new int[n];
+            reset = new long[(n + 63) >>> 6];
+        }
+
+        boolean isReset(int id) {
+            return (reset[id >>> 6] & (1L << id)) != 0;
+        }
+
+        @Override
+        public void visit(int id, Op op, long epochNanos, int delta, int oh, int rs) {
+            if (op == Op.INIT)
+                reset[id >>> 6] |= 1L << id;
+            apply(op, id, delta, onHand, reserved);
+        }
+    }
+
+    private static void apply(Op op, int id, int delta, int[] onHand, int[] reserved) {
+        switch (op) {
+            case INIT -> {
+                onHand[id] = delta;
+                reserved[id] = 0;
+            }
+            case RESTOCK, SERIALS_RECEIVED -> onHand[id] += delta;
+            case RESERVE -> reserved[id] += delta;
+            case RELEASE -> reserved[id] -= delta;
+            case WRITE_OFF -> onHand[id] -= delta;
+            case SHIP -> {
+                onHand[id] -= delta;
+                reserved[id] -= delta;
+            }
+            default -> {
+                // non-quantity events (expiry, serial bookkeeping, notes)
+            }
+        }
+    }
+
+    private State readSnapshot(Path snapshot) {
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(snapshot)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC)
+                throw new IllegalStateException("Not a stock snapshot: " + snapshot);
+            long position = in.readLong();
+            int n = in.readInt();
+            String[] skus = new String[n];
+            int[] onHand = new int[n];
+            int[] reserved = new int[n];
+            for (int i = 0; i < n; i++) {
+                skus[i] = in.readUTF();
+                onHand[i] = in.readInt();
+                reserved[i] = in.readInt();
+            }
+            return new State(position, skus, onHand, reserved);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read snapshot " + snapshot, e);
+        }
+    }
+}
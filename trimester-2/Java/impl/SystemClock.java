@@ -0,0 +1,29 @@
+package impl;
+
+import interfaces.ClockService;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/** Reads the system clock and time zone on every call. */
+public class SystemClock implements ClockService {
+
+    private final ZoneId zone;
+
+    public SystemClock() {
+        this(ZoneId.systemDefault());
+    }
+
+    public SystemClock(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public LocalDate today() {
+        return LocalDate.now(zone);
+    }
+}
@@ -0,0 +1,129 @@
+package interfaces;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Backend that keeps audit events as compact primitive records
+ * (op, epoch-nanos, delta, onHand, reserved). Text is produced only when read.
+ */
+public interface AuditStore {
+
+    /** Operation codes; each knows how to render its record as text. */
+    enum Op {
+        INIT {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "INIT onHand=" + onHand;
+            }
+        },
+        RESTOCK {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "RESTOCK +" + delta + ", onHand=" + onHand;
+            }
+        },
+        RESERVE {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "RESERVE " + delta + ", reserved=" + reserved + ", available=" + (onHand - reserved);
+            }
+        },
+        RELEASE {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "RELEASE " + delta + ", reserved=" + reserved;
+            }
+        },
+        SHIP {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "SHIP " + delta + ", onHand=" + onHand + ", reserved=" + reserved;
+            }
+        },
+        /** delta = expiry as epoch day. */
+        EXPIRY {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "SET EXPIRY " + LocalDate.ofEpochDay(delta);
+            }
+        },
+        /** delta = initial serial count. */
+        SERIALS_INIT {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "SERIALS init count=" + delta;
+            }
+        },
+        /** delta = serials shipped; onHand carries the serials remaining. */
+        SERIALS_SHIPPED {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "SERIALS shipped=" + delta + ", remaining=" + onHand;
+            }
+        },
+        /** note = the serial received. */
+        SERIAL_ADDED {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "SERIAL added=" + note;
+            }
+        },
+        /** Free-form message. */
+        NOTE {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return String.valueOf(note);
+            }
+        },
+        /** delta = units received; onHand carries the lot's expiry epoch day. */
+        LOT_ADDED {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "LOT +" + delta + ", expiry=" + LocalDate.ofEpochDay(onHand);
+            }
+        },
+        WRITE_OFF {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "WRITE-OFF " + delta + ", onHand=" + onHand;
+            }
+        },
+        /** Bulk serial receipt: delta = units added; note = rejected duplicates, if any. */
+        SERIALS_RECEIVED {
+            @Override
+            String describe(int delta, int onHand, int reserved, String note) {
+                return "SERIALS received +" + delta + ", onHand=" + onHand + (note == null ? "" : ", " + note);
+            }
+        };
+
+        private static final Op[] VALUES = values();
+
+        abstract String describe(int delta, int onHand, int reserved, String note);
+
+        /** Decode an op from its stored ordinal. */
+        public static Op of(int code) {
+            return VALUES[code];
+        }
+    }
+
+    /** Record one event. {@code note} is null for the numeric ops. */
+    void append(Op op, long epochNanos, int delta, int onHand, int reserved, String note);
+
+    /** Number of events currently held. */
+    int size();
+
+    /** Rendered entries, oldest first. */
+    List<String> render();
+
+    /** Render one record in the "timestamp — message" form used by the audit log. */
+    static String format(Op op, long epochNanos, int delta, int onHand, int reserved, String note) {
+        Instant at = Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                Math.floorMod(epochNanos, 1_000_000_000L));
+        return LocalDateTime.ofInstant(at, ZoneId.systemDefault()) + " — "
+                + op.describe(delta, onHand, reserved, note);
+    }
+}
@@ -0,0 +1,18 @@
+package interfaces;
+
+import java.time.LocalDate;
+
+/** Source of "now" for audit timestamps, expiry checks and pricing. */
+public interface ClockService {
+
+    /** Wall-clock time in epoch milliseconds. */
+    long currentTimeMillis();
+
+    /** Wall-clock time in epoch nanoseconds (resolution depends on the clock). */
+    default long epochNanos() {
+        return currentTimeMillis() * 1_000_000L;
+    }
+
+    /** Current local date. */
+    LocalDate today();
+}
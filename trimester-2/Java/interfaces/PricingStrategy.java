@@ -5,4 +5,63 @@ public interface PricingStrategy {
     double price(StockItem item, int units);
 
     String name();
-}
\ No newline at end of file
+
+    /**
+     * Exact price in paise. The default rounds {@link #price} half-up; built-in
+     * strategies override it with pure {@code long} arithmetic.
+     */
+    default long pricePaise(StockItem item, int units) {
+        return Math.round(price(item, units) * 100.0);
+    }
+
+    /**
+     * Price a whole cart in one call: {@code out[i]} receives the price of
+     * {@code units[i]} of {@code items[i]}. Implementations may override this
+     * with a loop that hoists per-call work out of the line loop.
+     */
+    default void priceAll(StockItem[] items, int[] units, double[] out) {
+        checkCart(items, units, out);
+        for (int i = 0; i < items.length; i++)
+            out[i] = price(items[i], units[i]);
+    }
+
+    /** Convenience: price a cart into a new array. */
+    default double[] priceAll(StockItem[] items, int[] units) {
+        double[] out = new double[items.length];
+        priceAll(items, units, out);
+        return out;
+    }
+
+    /**
+     * Apply this strategy as one stage of a pipeline to an amount (paise) already
+     * priced by earlier stages. The default scales the amount by this strategy's
+     * price relative to the flat base price, rounding half-up.
+     */
+    default long adjustPaise(StockItem item, int units, long amountPaise) {
+        if (units <= 0)
+            return amountPaise;
+        long flat = Math.multiplyExact(item.getBaseUnitPricePaise(), (long) units);
+        if (flat == 0)
+            return amountPaise;
+        long scaled = Math.multiplyExact(amountPaise, pricePaise(item, units));
+        return Math.floorDiv(scaled + flat / 2, flat);
+    }
+
+    /** Fixed-point cart pricing: {@code out[i]} receives the line price in paise. */
+    default void pricePaiseAll(StockItem[] items, int[] units, long[] out) {
+        checkCart(items, units, out.length);
+        for (int i = 0; i < items.length; i++)
+            out[i] = pricePaise(items[i], units[i]);
+    }
+
+    /** Validate that the cart arrays line up. */
+    static void checkCart(StockItem[] items, int[] units, double[] out) {
+        checkCart(items, units, out.length);
+    }
+
+    /** Validate that the cart arrays line up with an output of {@code outLength}. */
+    static void checkCart(StockItem[] items, int[] units, int outLength) {
+        if (items.length != units.length || outLength < items.length)
+            throw new IllegalArgumentException("Cart arrays must have matching lengths");
+    }
+}
@@ -20,6 +20,11 @@ public interface StockItem {
     /** Read-only access to base unit price for pricing strategies. */
     double getBaseUnitPrice();
 
+    /** Base unit price in paise (minor units) for exact fixed-point pricing. */
+    default long getBaseUnitPricePaise() {
+        return Math.round(getBaseUnitPrice() * 100.0);
+    }
+
     /** Add units to inventory. */
     void restock(int amount);
 